@@ -0,0 +1,63 @@
+package io.github.haloka.telegram.logback;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Rendering one alert, with and without throwable and MDC, with system statistics sampled
+ * per alert (PT0S) or taken from the background snapshot (PT1S).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AlertFormatterBenchmark {
+    @Param({"true", "false"})
+    public boolean throwable;
+
+    @Param({"true", "false"})
+    public boolean mdc;
+
+    @Param({"PT0S", "PT1S"})
+    public String statsInterval;
+
+    private ScheduledExecutorService scheduler;
+    private AlertFormatter formatter;
+    private AlertEvent event;
+
+    @Setup
+    public void setUp() {
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        TimestampFormatter timestamps = new TimestampFormatter("Asia/Tokyo");
+        formatter = new AlertFormatter("BenchApp", "bench-host", "10.0.0.1", timestamps,
+            new SystemStatsSampler(timestamps, Duration.parse(statsInterval), scheduler));
+        event = AlertEvent.of(BenchmarkEvents.event("Failed to process payment <42> & retry",
+            throwable ? new IllegalStateException("Payment 42 rejected by gateway") : null, mdc));
+    }
+
+    @TearDown
+    public void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    @Benchmark
+    public String formatError() {
+        return formatter.formatError(event);
+    }
+}
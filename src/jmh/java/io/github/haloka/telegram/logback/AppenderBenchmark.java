@@ -0,0 +1,116 @@
+package io.github.haloka.telegram.logback;
+
+import ch.qos.logback.classic.spi.LoggingEvent;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * End-to-end {@code doAppend} as seen by the logging thread, with the send queue replaced by
+ * one that takes and discards every message, so the senders never fall behind and a full queue
+ * never turns the benchmark into a measurement of the drop path. Compares inline rendering with
+ * deferredFormatting.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AppenderBenchmark {
+    @Param({"false", "true"})
+    public boolean deferredFormatting;
+
+    private TelegramAppender appender;
+    private LoggingEvent event;
+
+    /**
+     * Accepts every request immediately without touching the network.
+     */
+    static final class StubHttpClient extends HttpClient {
+        StubHttpClient() {
+            super(Duration.ofSeconds(1), Duration.ofSeconds(1), false);
+        }
+
+        @Override
+        String post(URI uri, byte[] body, Map<String, String> headers) {
+            return "{\"ok\":true,\"result\":{\"message_id\":1}}";
+        }
+
+        @Override
+        CompletableFuture<String> postAsync(URI uri, byte[] body, Map<String, String> headers) {
+            return CompletableFuture.completedFuture(post(uri, body, headers));
+        }
+    }
+
+    /**
+     * Accepts every message and drops it, as if the senders kept up instantly.
+     */
+    static final class DiscardingQueue extends ArrayBlockingQueue<TelegramMessage> {
+        DiscardingQueue() {
+            super(1);
+        }
+
+        @Override
+        public boolean offer(TelegramMessage message) {
+            return true;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        appender = new TelegramAppender();
+        appender.setContext(BenchmarkEvents.CONTEXT);
+        appender.setUrl("http://localhost/bot{0}/sendMessage");
+        appender.setBotToken("bench");
+        appender.setChatId("1");
+        appender.setAppName("BenchApp");
+        appender.setDeferredFormatting(deferredFormatting);
+        appender.setRateLimitMaxMessages(Integer.MAX_VALUE);
+        appender.setRateLimitChatPerSecond(0);
+        appender.setRateLimitGlobalPerSecond(0);
+        appender.setThreadQueueCapacity(1 << 16);
+        appender.start();
+        appender.httpClient = new StubHttpClient();
+        appender.queue = new DiscardingQueue();
+
+        event = BenchmarkEvents.errorEvent(7);
+        event.getThrowableProxy();
+    }
+
+    @TearDown
+    public void tearDown() {
+        long dropped = appender.getMetrics().getDroppedQueueFull();
+        appender.stop();
+        if (dropped != 0) {
+            throw new IllegalStateException(dropped + " alerts were dropped on a full queue, the results measure the drop path");
+        }
+    }
+
+    @Benchmark
+    public void append() {
+        appender.doAppend(event);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void appendContended() {
+        appender.doAppend(event);
+    }
+}
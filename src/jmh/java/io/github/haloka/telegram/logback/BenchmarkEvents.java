@@ -0,0 +1,35 @@
+package io.github.haloka.telegram.logback;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import java.util.Map;
+
+/**
+ * Logging events shared by the benchmarks.
+ */
+final class BenchmarkEvents {
+    static final LoggerContext CONTEXT = new LoggerContext();
+    private static final Logger LOGGER = CONTEXT.getLogger("com.example.payment.PaymentService");
+
+    private BenchmarkEvents() {
+    }
+
+    static LoggingEvent event(String message, Throwable throwable, boolean withMdc) {
+        LoggingEvent event = new LoggingEvent(Logger.class.getName(), LOGGER, Level.ERROR, message, throwable, null);
+        if (withMdc) {
+            event.setMDCPropertyMap(Map.of(
+                "traceId", "6761082bf3ef78defc655e06b0e7f2f9",
+                "spanId", "fc655e06b0e7f2f9"));
+        } else {
+            event.setMDCPropertyMap(Map.of());
+        }
+        return event;
+    }
+
+    static LoggingEvent errorEvent(int id) {
+        return event("Failed to process payment " + id,
+            new IllegalStateException("Payment " + id + " rejected by gateway"), false);
+    }
+}
@@ -0,0 +1,58 @@
+package io.github.haloka.telegram.logback;
+
+import ch.qos.logback.classic.spi.LoggingEvent;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of deriving the alert group of an event: the string key used for labels against
+ * the fingerprints RateGuard is keyed on.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GroupKeyBenchmark {
+    private LoggingEvent event;
+    private MessageGroupKeys messageKeys;
+    private StackGroupKeys stackKeys;
+
+    @Setup
+    public void setUp() {
+        event = BenchmarkEvents.errorEvent(42);
+        event.getThrowableProxy();
+        messageKeys = new MessageGroupKeys();
+        stackKeys = new StackGroupKeys(5);
+    }
+
+    @Benchmark
+    public String stringKey() {
+        return Utils.generateGroupKey(event.getMessage(), event.getThrowableProxy());
+    }
+
+    @Benchmark
+    public long messageFingerprint() {
+        return messageKeys.fingerprint(event);
+    }
+
+    @Benchmark
+    public long stackFingerprintCached() {
+        return stackKeys.fingerprint(event);
+    }
+
+    @Benchmark
+    public long stackFingerprintUncached() {
+        return new StackGroupKeys(5).fingerprint(event);
+    }
+}
@@ -0,0 +1,62 @@
+package io.github.haloka.telegram.logback;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.nio.charset.StandardCharsets;
+import java.text.MessageFormat;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Per-send request preparation: "map" is the former URL format plus Map.of payload through
+ * ObjectMapper, encoded again by BodyPublishers.ofString; "streaming" is PayloadEncoder.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PayloadBenchmark {
+    @Param({"400", "4000"})
+    public int textLength;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private PayloadEncoder encoder;
+    private TelegramMessage message;
+
+    @Setup
+    public void setUp() {
+        encoder = new PayloadEncoder(objectMapper.getFactory(), 1);
+        StringBuilder text = new StringBuilder("🚨 <b>ALARM</b> \"quoted\"\n");
+        while (text.length() < textLength) {
+            text.append("at com.example.service.OrderService.place(OrderService.java:42)\n");
+        }
+        message = new TelegramMessage("-1001234567890", text.substring(0, textLength));
+    }
+
+    @Benchmark
+    public Object map() throws Exception {
+        String url = MessageFormat.format("https://api.telegram.org/bot{0}/sendMessage", "123:bench");
+        String body = objectMapper.writeValueAsString(Map.of(
+            "chat_id", message.getChatId(),
+            "text", message.getText(),
+            "parse_mode", message.getParseMode()));
+        return url.length() + body.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    @Benchmark
+    public byte[] streaming() throws Exception {
+        return encoder.encode(message);
+    }
+}
@@ -0,0 +1,56 @@
+package io.github.haloka.telegram.logback;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Four logging threads offering into the send queue while two senders drain it, as with
+ * the default thread pool. Offers fail fast when the queue is full, like append does.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueueBenchmark {
+    @Param({"array", "ring"})
+    public String type;
+
+    private BlockingQueue<TelegramMessage> queue;
+    private final TelegramMessage message = new TelegramMessage("1", "alert");
+
+    @Setup
+    public void setUp() {
+        queue = "ring".equals(type) ? new RingBufferQueue<>(512, new RingBufferQueue.Sleeping())
+            : new ArrayBlockingQueue<>(512);
+    }
+
+    @Benchmark
+    @Group("queue")
+    @GroupThreads(4)
+    public boolean offer() {
+        return queue.offer(message);
+    }
+
+    @Benchmark
+    @Group("queue")
+    @GroupThreads(2)
+    public TelegramMessage poll() {
+        return queue.poll();
+    }
+}
@@ -0,0 +1,100 @@
+package io.github.haloka.telegram.logback;
+
+import ch.qos.logback.classic.spi.LoggingEvent;
+import io.github.haloka.telegram.logback.config.GuardConfig;
+import io.github.haloka.telegram.logback.config.GuardStage;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * RateGuard.shouldSendAlert for a group seen for the first time, a group that keeps
+ * alerting and a group that is suppressed, single- and multi-threaded.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RateGuardBenchmark {
+    private static final int NEW_KEYS = 1 << 16;
+
+    private RateGuard openGuard;
+    private RateGuard suppressingGuard;
+    private RateGuard newKeyGuard;
+    private LoggingEvent hotEvent;
+    private LoggingEvent[] newEvents;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        GuardConfig open = new GuardConfig();
+        openGuard = new RateGuard(open, new TimestampFormatter("UTC"), new MessageGroupKeys());
+
+        GuardConfig suppressing = new GuardConfig();
+        GuardStage stage = new GuardStage();
+        stage.setCount(2);
+        stage.setDuration("PT10M");
+        stage.setLabel("bench");
+        suppressing.getStages().add(stage);
+        suppressingGuard = new RateGuard(suppressing, new TimestampFormatter("UTC"), new MessageGroupKeys());
+
+        hotEvent = BenchmarkEvents.errorEvent(1);
+        hotEvent.getThrowableProxy();
+        newEvents = new LoggingEvent[NEW_KEYS];
+        for (int i = 0; i < NEW_KEYS; i++) {
+            newEvents[i] = BenchmarkEvents.event("distinct failure " + i, null, false);
+        }
+
+        long now = System.currentTimeMillis();
+        suppressingGuard.shouldSendAlert(now, hotEvent);
+        suppressingGuard.shouldSendAlert(now, hotEvent);
+    }
+
+    @Setup(Level.Iteration)
+    public void resetNewKeys() {
+        GuardConfig config = new GuardConfig();
+        config.setMaxGroups(NEW_KEYS);
+        newKeyGuard = new RateGuard(config, new TimestampFormatter("UTC"), new MessageGroupKeys());
+        next = 0;
+    }
+
+    @Benchmark
+    public SendDecision newKey() {
+        // Wraps into hot keys once every distinct event was seen in this iteration
+        return newKeyGuard.shouldSendAlert(System.currentTimeMillis(), newEvents[next++ & (NEW_KEYS - 1)]);
+    }
+
+    @Benchmark
+    public SendDecision hotKey() {
+        return openGuard.shouldSendAlert(System.currentTimeMillis(), hotEvent);
+    }
+
+    @Benchmark
+    public SendDecision suppressedKey() {
+        return suppressingGuard.shouldSendAlert(System.currentTimeMillis(), hotEvent);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public SendDecision hotKeyContended() {
+        return openGuard.shouldSendAlert(System.currentTimeMillis(), hotEvent);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public SendDecision suppressedKeyContended() {
+        return suppressingGuard.shouldSendAlert(System.currentTimeMillis(), hotEvent);
+    }
+}
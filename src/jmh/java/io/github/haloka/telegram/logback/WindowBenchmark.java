@@ -0,0 +1,83 @@
+package io.github.haloka.telegram.logback;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Record plus count, as RateGuard does per event, for window capacities from a small
+ * stage threshold up to 10k. "scan" is the former array-scan window kept for comparison.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WindowBenchmark {
+    @Param({"11", "101", "1001", "10001"})
+    public int capacity;
+
+    @Param({"exact", "bucketed", "scan"})
+    public String type;
+
+    private Window window;
+    private long now;
+
+    @Setup
+    public void setUp() {
+        Duration windowTime = Duration.ofMinutes(1);
+        window = "scan".equals(type) ? new ScanWindow(windowTime, capacity)
+            : Window.create(type, windowTime, capacity, 60);
+        now = System.currentTimeMillis();
+        for (int i = 0; i < capacity; i++) {
+            window.recordEvent(now);
+        }
+    }
+
+    @Benchmark
+    public int recordAndCount() {
+        now++;
+        window.recordEvent(now);
+        return window.getEventCount(now);
+    }
+
+    /**
+     * The pre-interface Window: a timestamp ring scanned with a stream on every count.
+     */
+    static final class ScanWindow implements Window {
+        private final long[] timestamps;
+        private final Duration windowTime;
+        private int currentIndex = 0;
+
+        ScanWindow(Duration windowTime, int windowSlotSize) {
+            this.windowTime = windowTime;
+            this.timestamps = new long[windowSlotSize];
+        }
+
+        @Override
+        public void recordEvent(long timestamp) {
+            timestamps[currentIndex] = timestamp;
+            currentIndex = (currentIndex + 1) % timestamps.length;
+        }
+
+        @Override
+        public int getEventCount(long timestamp) {
+            long windowStart = timestamp - windowTime.toMillis();
+            return (int) Arrays.stream(timestamps)
+                .filter(t -> t > windowStart)
+                .count();
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package io.github.haloka.telegram.logback;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.IThrowableProxy;
+import java.util.Map;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+/**
+ * Immutable capture of the parts of a logging event an alert is rendered from, so
+ * rendering can happen on a sender thread after {@code append} has returned.
+ */
+@Data
+class AlertEvent {
+    private final Level level;
+    private final String loggerName;
+    private final long timeStamp;
+    private final String formattedMessage;
+    private final Map<String, String> mdcPropertyMap;
+    private final IThrowableProxy throwableProxy;
+    /** Text rendered by the first sender, shared by every chat the alert fans out to */
+    @EqualsAndHashCode.Exclude
+    private volatile String rendered;
+
+    static AlertEvent of(ILoggingEvent event) {
+        // Logback hands out an unmodifiable copy of the MDC taken for this event
+        return new AlertEvent(
+            event.getLevel(),
+            event.getLoggerName(),
+            event.getTimeStamp(),
+            event.getFormattedMessage(),
+            event.getMDCPropertyMap(),
+            event.getThrowableProxy());
+    }
+}
@@ -1,37 +1,96 @@
 package io.github.haloka.telegram.logback;
 
-import ch.qos.logback.classic.spi.ILoggingEvent;
 import ch.qos.logback.classic.spi.IThrowableProxy;
 import ch.qos.logback.classic.spi.StackTraceElementProxy;
-import com.sun.management.OperatingSystemMXBean;
-import java.lang.management.GarbageCollectorMXBean;
-import java.lang.management.ManagementFactory;
-import java.lang.management.MemoryMXBean;
-import java.lang.management.RuntimeMXBean;
-import java.lang.management.ThreadMXBean;
-import java.time.Instant;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 
 class AlertFormatter {
     private static final int MAX_STACK_LINES = 8;
-    private final String timezone;
+    private static final int FRAME_CACHE_SIZE = 1024;
+    private static final int BLOCK_CACHE_SIZE = 256;
+    private final TimestampFormatter timestamps;
+    private final SystemStatsSampler systemStats;
+    private final PackageFilter packages;
+    /** App and host lines, identical for every alert of this appender */
+    private final String prelude;
+    /** Direct-mapped; entries are immutable and replaced whole, so racing writers can only cause a miss */
+    private final CachedFrame[] frames = new CachedFrame[FRAME_CACHE_SIZE];
+    private final CachedBlock[] blocks = new CachedBlock[BLOCK_CACHE_SIZE];
+
+    /**
+     * Keeps the frame's fields rather than the frame, which may pin its class. Every field that
+     * {@code toString()} renders is compared, the class loader and module included, so two
+     * deployments of the same class never share an entry.
+     */
+    private static final class CachedFrame {
+        private final String className;
+        private final String methodName;
+        private final String fileName;
+        private final int lineNumber;
+        private final String classLoaderName;
+        private final String moduleName;
+        private final String moduleVersion;
+        private final String html;
+
+        private CachedFrame(StackTraceElement frame, String html) {
+            this.className = frame.getClassName();
+            this.methodName = frame.getMethodName();
+            this.fileName = frame.getFileName();
+            this.lineNumber = frame.getLineNumber();
+            this.classLoaderName = frame.getClassLoaderName();
+            this.moduleName = frame.getModuleName();
+            this.moduleVersion = frame.getModuleVersion();
+            this.html = html;
+        }
 
-    AlertFormatter(String timezone) {
-        this.timezone = timezone;
+        private boolean matches(StackTraceElement frame) {
+            return lineNumber == frame.getLineNumber() && className.equals(frame.getClassName())
+                && methodName.equals(frame.getMethodName()) && Objects.equals(fileName, frame.getFileName())
+                && Objects.equals(classLoaderName, frame.getClassLoaderName())
+                && Objects.equals(moduleName, frame.getModuleName())
+                && Objects.equals(moduleVersion, frame.getModuleVersion());
+        }
     }
 
-    public String formatError(String hostName, String hostIp, String appName, ILoggingEvent event) {
-        StringBuilder sb = new StringBuilder();
+    private static final class CachedBlock {
+        private final long fingerprint;
+        private final String html;
+
+        private CachedBlock(long fingerprint, String html) {
+            this.fingerprint = fingerprint;
+            this.html = html;
+        }
+    }
+
+    AlertFormatter(String appName, String hostName, String hostIp,
+                   TimestampFormatter timestamps, SystemStatsSampler systemStats) {
+        this(appName, hostName, hostIp, timestamps, systemStats, PackageFilter.DEFAULT);
+    }
+
+    /**
+     * @param packages decides which frames are shown
+     */
+    AlertFormatter(String appName, String hostName, String hostIp,
+                   TimestampFormatter timestamps, SystemStatsSampler systemStats, PackageFilter packages) {
+        this.timestamps = timestamps;
+        this.systemStats = systemStats;
+        this.packages = packages;
+        this.prelude = "<b>App:</b> " + appName + "\n"
+            + "<b>Host:</b> " + hostName + " (<code>" + hostIp + "</code>)\n";
+    }
+
+    public String formatError(AlertEvent event) {
+        StringBuilder sb = new StringBuilder(2048);
 
         sb.append("🚨 <b>ALARM ")
-            .append(Utils.formatDateTime(Instant.ofEpochMilli(event.getTimeStamp()), timezone))
+            .append(timestamps.format(event.getTimeStamp()))
             .append("</b>\n");
 
-        appendBasicInfo(hostName, hostIp, appName, event, sb);
+        sb.append(prelude);
+        appendBasicInfo(event, sb);
         appendMdcInfo(sb, event);
-        appendSystemStats(sb);
+        sb.append(systemStats.get());
         appendError(sb, event);
 
         if (event.getThrowableProxy() != null) {
@@ -42,81 +101,7 @@ class AlertFormatter {
         return sb.toString();
     }
 
-    private void appendSystemStats(StringBuilder sb) {
-        MemoryMXBean memoryBean = ManagementFactory.getMemoryMXBean();
-        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
-        RuntimeMXBean runtimeBean = ManagementFactory.getRuntimeMXBean();
-
-        String osName = System.getProperty("os.name");
-        String osVersion = System.getProperty("os.version");
-        String osArch = System.getProperty("os.arch");
-
-        sb.append("\n\n<b>Detailed Statistics:</b>\n");
-
-        long heapUsed = memoryBean.getHeapMemoryUsage().getUsed() / (1024 * 1024);
-        long heapMax = memoryBean.getHeapMemoryUsage().getMax() / (1024 * 1024);
-        long nonHeapUsed = memoryBean.getNonHeapMemoryUsage().getUsed() / (1024 * 1024);
-
-        sb.append("<pre>");
-        sb.append("Name: ").append(osName).append(", OS Version: ").append(osVersion).append(" (").append(osArch).append(")\n");
-
-        sb.append("Memory Heap: ").append(heapUsed).append("MB/").append(heapMax).append("MB, ");
-        sb.append("Non-Heap: ").append(nonHeapUsed).append("MB, ");
-        sb.append("GC Count: ").append(getGCCount()).append("\n");
-
-        sb.append("Threads Active: ").append(threadBean.getThreadCount()).append(", ");
-        sb.append("Peak: ").append(threadBean.getPeakThreadCount()).append(", ");
-        sb.append("Daemon: ").append(threadBean.getDaemonThreadCount()).append("\n");
-        try {
-            OperatingSystemMXBean osBean = (OperatingSystemMXBean)ManagementFactory.getOperatingSystemMXBean();
-            sb.append("System Load: ").append(String.format("%.1f%%", osBean.getProcessCpuLoad() * 100)).append("\n");
-        } catch (Exception e) {
-            sb.append("System Load: N/A\n");
-        }
-
-        sb.append("Uptime: ").append(formatUptime(runtimeBean.getUptime())).append(", ");
-        sb.append("Started: ").append(formatStartTime(runtimeBean.getStartTime())).append(", ");
-        sb.append("Args: ").append(formatJVMArgs(runtimeBean.getInputArguments()));
-        sb.append("</pre>");
-    }
-
-    private long getGCCount() {
-        long count = 0;
-        for (GarbageCollectorMXBean gcBean : ManagementFactory.getGarbageCollectorMXBeans()) {
-            long gcCount = gcBean.getCollectionCount();
-            if (gcCount != -1) {
-                count += gcCount;
-            }
-        }
-        return count;
-    }
-
-    private String formatUptime(long uptime) {
-        long hours = uptime / (60 * 60 * 1000);
-        long minutes = (uptime % (60 * 60 * 1000)) / (60 * 1000);
-        long seconds = (uptime % (60 * 1000)) / 1000;
-        return String.format("%02d:%02d:%02d", hours, minutes, seconds);
-    }
-
-    private String formatStartTime(long startTime) {
-        return Utils.formatDateTime(Instant.ofEpochMilli(startTime), timezone);
-    }
-
-    private String formatJVMArgs(List<String> args) {
-        if (args.isEmpty()) return "none";
-        return args.size() + " args";
-    }
-
-    private void appendBasicInfo(String hostName, String hostIp, String appName, ILoggingEvent event,
-        StringBuilder sb) {
-        sb.append("<b>App:</b> ")
-            .append(appName)
-            .append("\n");
-        sb.append("<b>Host:</b> ")
-            .append(hostName)
-            .append(" (<code>")
-            .append(hostIp)
-            .append("</code>)\n");
+    private void appendBasicInfo(AlertEvent event, StringBuilder sb) {
         sb.append("<b>Level:</b> ")
             .append(event.getLevel())
             .append("\n");
@@ -127,7 +112,7 @@ class AlertFormatter {
             .append("</code>");
     }
 
-    private void appendError(StringBuilder sb, ILoggingEvent event) {
+    private void appendError(StringBuilder sb, AlertEvent event) {
         String message = Utils.htmlEscape(event.getFormattedMessage());
         message = message.length() > 800 ? message.substring(0, 800) + "..." : message;
         sb.append("\n\n<b>Message:</b>")
@@ -136,8 +121,8 @@ class AlertFormatter {
             .append("</pre>");
     }
 
-    private void appendMdcInfo(StringBuilder sb, ILoggingEvent event) {
-        Map<String, String> mdcProps = event.getMDCPropertyMap();
+    private void appendMdcInfo(StringBuilder sb, AlertEvent event) {
+        Map<String, String> mdcProps = event.getMdcPropertyMap();
         if (!mdcProps.isEmpty()) {
             sb.append("\n\n🔍 <b>Context Info:</b>\n");
             mdcProps.forEach((key, value) ->
@@ -148,11 +133,26 @@ class AlertFormatter {
     }
 
     private void appendDetails(StringBuilder sb, IThrowableProxy throwable) {
-        StringBuilder sub = new StringBuilder();
-
         sb.append("\n\n⚠️ <b>Exception Details:</b>\n");
         sb.append("<pre>");
 
+        // The same exception logged again renders to the same block
+        long fingerprint = fingerprint(throwable);
+        int slot = (int) fingerprint & (BLOCK_CACHE_SIZE - 1);
+        CachedBlock cached = blocks[slot];
+        if (cached != null && cached.fingerprint == fingerprint) {
+            sb.append(cached.html);
+        } else {
+            String html = renderDetails(throwable);
+            blocks[slot] = new CachedBlock(fingerprint, html);
+            sb.append(html);
+        }
+        sb.append("</pre>");
+    }
+
+    private String renderDetails(IThrowableProxy throwable) {
+        StringBuilder sub = new StringBuilder();
+
         sub.append("Type: ").append(throwable.getClassName()).append("\n");
         if (Utils.hasText(throwable.getMessage())) {
             sub.append("Message: ").append(Utils.htmlEscape(throwable.getMessage())).append("\n");
@@ -160,8 +160,7 @@ class AlertFormatter {
 
         sub.append("\nStack Trace:\n");
         StackTraceElementProxy[] stack = throwable.getStackTraceElementProxyArray();
-        List<String> relevantStack = filterStackTrace(stack);
-        sub.append(String.join("\n", relevantStack));
+        appendRelevantFrames(sub, stack);
 
         if (stack.length > MAX_STACK_LINES) {
             sub.append("\n... ").append(stack.length - MAX_STACK_LINES)
@@ -169,36 +168,31 @@ class AlertFormatter {
         }
 
         if (throwable.getCause() != null) {
-            sub.append("\n\nCaused by: ")
-                .append(formatCause(throwable.getCause(), "  "));
+            sub.append("\n\nCaused by: ");
+            appendCause(sub, throwable.getCause(), "  ");
         }
 
-
-        sb.append(sub.length() > 1000 ? sub.substring(0, 1000) + "..." : sub);
-        sb.append("</pre>");
+        return sub.length() > 1000 ? sub.substring(0, 1000) + "..." : sub.toString();
     }
 
-    private List<String> filterStackTrace(StackTraceElementProxy[] stack) {
-        List<String> relevantLines = new ArrayList<>();
+    private void appendRelevantFrames(StringBuilder sb, StackTraceElementProxy[] stack) {
         int count = 0;
-
         for (StackTraceElementProxy element : stack) {
             if (count >= MAX_STACK_LINES) {
                 break;
             }
-
-            String line = element.getStackTraceElement().toString();
-            if (isRelevantStackLine(line)) {
-                relevantLines.add(Utils.htmlEscape(line));
+            StackTraceElement frame = element.getStackTraceElement();
+            if (packages.isRelevant(frame.getClassName())) {
+                if (count > 0) {
+                    sb.append("\n");
+                }
+                sb.append(renderFrame(frame));
                 count++;
             }
         }
-
-        return relevantLines;
     }
 
-    private String formatCause(IThrowableProxy cause, String indent) {
-        StringBuilder sb = new StringBuilder();
+    private void appendCause(StringBuilder sb, IThrowableProxy cause, String indent) {
         sb.append(cause.getClassName());
         if (Utils.hasText(cause.getMessage())) {
             sb.append(": ").append(Utils.htmlEscape(cause.getMessage()));
@@ -209,17 +203,48 @@ class AlertFormatter {
         for (int i = 0; i < Math.min(3, causeStack.length); i++) {
             sb.append(indent)
                 .append("at ")
-                .append(Utils.htmlEscape(causeStack[i].getStackTraceElement().toString()))
+                .append(renderFrame(causeStack[i].getStackTraceElement()))
                 .append("\n");
         }
+    }
 
-        return sb.toString();
+    /**
+     * HTML-escaped {@code toString()} of a frame, cached since the same frames recur in every
+     * exception thrown through them.
+     */
+    private String renderFrame(StackTraceElement frame) {
+        int slot = frame.hashCode() & (FRAME_CACHE_SIZE - 1);
+        CachedFrame cached = frames[slot];
+        if (cached != null && cached.matches(frame)) {
+            return cached.html;
+        }
+        String html = Utils.htmlEscape(frame.toString());
+        frames[slot] = new CachedFrame(frame, html);
+        return html;
     }
 
-    private boolean isRelevantStackLine(String line) {
-        return !line.startsWith("org.springframework") &&
-                !line.startsWith("java.") &&
-                !line.startsWith("javax.") &&
-                !line.startsWith("sun.");
+    /**
+     * Covers everything {@link #renderDetails} reads: type, message and every frame of the
+     * throwable, and the first frames of its cause. Frames are mixed by their hash code, which
+     * spans class, method, file, line, class loader and module and needs no pass over their strings.
+     */
+    private static long fingerprint(IThrowableProxy throwable) {
+        long hash = Fingerprint.mix(Fingerprint.SEED, throwable.getClassName(), Integer.MAX_VALUE);
+        hash = Fingerprint.mix(hash, throwable.getMessage(), 1000);
+        StackTraceElementProxy[] stack = throwable.getStackTraceElementProxyArray();
+        hash = Fingerprint.mix(hash, stack.length);
+        for (StackTraceElementProxy element : stack) {
+            hash = Fingerprint.mix(hash, element.getStackTraceElement().hashCode());
+        }
+        IThrowableProxy cause = throwable.getCause();
+        if (cause != null) {
+            hash = Fingerprint.mix(hash, cause.getClassName(), Integer.MAX_VALUE);
+            hash = Fingerprint.mix(hash, cause.getMessage(), 1000);
+            StackTraceElementProxy[] causeStack = cause.getStackTraceElementProxyArray();
+            for (int i = 0; i < Math.min(3, causeStack.length); i++) {
+                hash = Fingerprint.mix(hash, causeStack[i].getStackTraceElement().hashCode());
+            }
+        }
+        return Fingerprint.finish(hash);
     }
 }
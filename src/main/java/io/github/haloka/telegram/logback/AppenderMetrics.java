@@ -0,0 +1,293 @@
+package io.github.haloka.telegram.logback;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * Self-metrics of one appender. Counters are {@link LongAdder}s, so recording on the append
+ * path costs an uncontended add; gauges are read from the live components on demand.
+ */
+class AppenderMetrics implements TelegramAppenderMetricsMBean {
+    static final String EVENTS_SEEN = "events.seen";
+    static final String EVENTS_SUPPRESSED = "events.suppressed";
+    static final String SUPPRESSION_NOTICES = "events.suppressionNotices";
+    static final String EVENTS_RATE_LIMITED = "events.rateLimited";
+    static final String EVENTS_DEDUPLICATED = "events.deduplicated";
+    static final String ENQUEUED = "queue.enqueued";
+    static final String DROPPED_QUEUE_FULL = "queue.droppedFull";
+    static final String ALERTS_SENT = "alerts.sent";
+    static final String REQUESTS_SENT = "requests.sent";
+    static final String FAILED = "requests.failed";
+    static final String RETRIED = "requests.retried";
+    static final String RETRY_DROPPED = "requests.retryDropped";
+    static final String THROTTLED = "requests.throttled";
+    static final String SPOOLED = "spool.written";
+    static final String REPEATS_FOLDED = "events.repeatsFolded";
+    static final String SPOOL_REPLAYED = "spool.replayed";
+    static final String LATENCY_FORMAT = "latency.format";
+    static final String LATENCY_SEND = "latency.send";
+
+    private final LongAdder eventsSeen = new LongAdder();
+    private final LongAdder eventsSuppressed = new LongAdder();
+    private final LongAdder suppressionNotices = new LongAdder();
+    private final LongAdder eventsRateLimited = new LongAdder();
+    private final LongAdder eventsDeduplicated = new LongAdder();
+    private final LongAdder enqueued = new LongAdder();
+    private final LongAdder droppedQueueFull = new LongAdder();
+    private final LongAdder alertsSent = new LongAdder();
+    private final LongAdder requestsSent = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder retried = new LongAdder();
+    private final LongAdder retryDropped = new LongAdder();
+    private final LongAdder throttled = new LongAdder();
+    private final LongAdder spooled = new LongAdder();
+    private final LongAdder repeatsFolded = new LongAdder();
+    private final LongAdder spoolReplayed = new LongAdder();
+    private final LatencyHistogram formatLatency = new LatencyHistogram();
+    private final LatencyHistogram sendLatency = new LatencyHistogram();
+
+    private final MetricsListener listener;
+    private volatile IntSupplier queueDepth = () -> 0;
+    private volatile IntSupplier alertGroups = () -> 0;
+    private volatile LongSupplier alertGroupsEvicted = () -> 0;
+    private volatile LongSupplier spoolSize = () -> 0;
+    private volatile LongSupplier spoolEvicted = () -> 0;
+
+    AppenderMetrics(MetricsListener listener) {
+        this.listener = listener;
+    }
+
+    void bindGauges(IntSupplier queueDepth, IntSupplier alertGroups, LongSupplier alertGroupsEvicted) {
+        this.queueDepth = queueDepth;
+        this.alertGroups = alertGroups;
+        this.alertGroupsEvicted = alertGroupsEvicted;
+    }
+
+    void bindSpool(LongSupplier spoolSize, LongSupplier spoolEvicted) {
+        this.spoolSize = spoolSize;
+        this.spoolEvicted = spoolEvicted;
+    }
+
+    void eventSeen() {
+        count(eventsSeen, EVENTS_SEEN, 1);
+    }
+
+    void eventSuppressed() {
+        count(eventsSuppressed, EVENTS_SUPPRESSED, 1);
+    }
+
+    void suppressionNotice() {
+        count(suppressionNotices, SUPPRESSION_NOTICES, 1);
+    }
+
+    void eventRateLimited() {
+        count(eventsRateLimited, EVENTS_RATE_LIMITED, 1);
+    }
+
+    void eventDeduplicated() {
+        count(eventsDeduplicated, EVENTS_DEDUPLICATED, 1);
+    }
+
+    void enqueued() {
+        count(enqueued, ENQUEUED, 1);
+    }
+
+    void droppedQueueFull() {
+        count(droppedQueueFull, DROPPED_QUEUE_FULL, 1);
+    }
+
+    void sent(int alerts, long sendNanos) {
+        count(requestsSent, REQUESTS_SENT, 1);
+        count(alertsSent, ALERTS_SENT, alerts);
+        latency(sendLatency, LATENCY_SEND, sendNanos);
+    }
+
+    void failed(long sendNanos) {
+        count(failed, FAILED, 1);
+        latency(sendLatency, LATENCY_SEND, sendNanos);
+    }
+
+    void retried() {
+        count(retried, RETRIED, 1);
+    }
+
+    void retryDropped() {
+        count(retryDropped, RETRY_DROPPED, 1);
+    }
+
+    void throttled() {
+        count(throttled, THROTTLED, 1);
+    }
+
+    void repeatFolded() {
+        count(repeatsFolded, REPEATS_FOLDED, 1);
+    }
+
+    void spooled() {
+        count(spooled, SPOOLED, 1);
+    }
+
+    void spoolReplayed() {
+        count(spoolReplayed, SPOOL_REPLAYED, 1);
+    }
+
+    void formatted(long formatNanos) {
+        latency(formatLatency, LATENCY_FORMAT, formatNanos);
+    }
+
+    private void count(LongAdder counter, String name, long delta) {
+        counter.add(delta);
+        if (listener != null) {
+            listener.onCount(name, delta);
+        }
+    }
+
+    private void latency(LatencyHistogram histogram, String name, long nanos) {
+        histogram.record(nanos);
+        if (listener != null) {
+            listener.onLatency(name, nanos);
+        }
+    }
+
+    @Override
+    public long getEventsSeen() {
+        return eventsSeen.sum();
+    }
+
+    @Override
+    public long getEventsSuppressed() {
+        return eventsSuppressed.sum();
+    }
+
+    @Override
+    public long getSuppressionNotices() {
+        return suppressionNotices.sum();
+    }
+
+    @Override
+    public long getEventsRateLimited() {
+        return eventsRateLimited.sum();
+    }
+
+    @Override
+    public long getEventsDeduplicated() {
+        return eventsDeduplicated.sum();
+    }
+
+    @Override
+    public long getEnqueued() {
+        return enqueued.sum();
+    }
+
+    @Override
+    public long getDroppedQueueFull() {
+        return droppedQueueFull.sum();
+    }
+
+    @Override
+    public long getAlertsSent() {
+        return alertsSent.sum();
+    }
+
+    @Override
+    public long getRequestsSent() {
+        return requestsSent.sum();
+    }
+
+    @Override
+    public double getAlertsPerRequest() {
+        long requests = requestsSent.sum();
+        return requests == 0 ? 0 : (double) alertsSent.sum() / requests;
+    }
+
+    @Override
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    @Override
+    public long getRetried() {
+        return retried.sum();
+    }
+
+    @Override
+    public long getRetryDropped() {
+        return retryDropped.sum();
+    }
+
+    @Override
+    public long getThrottled() {
+        return throttled.sum();
+    }
+
+    @Override
+    public long getRepeatsFolded() {
+        return repeatsFolded.sum();
+    }
+
+    @Override
+    public long getSpooled() {
+        return spooled.sum();
+    }
+
+    @Override
+    public long getSpoolReplayed() {
+        return spoolReplayed.sum();
+    }
+
+    @Override
+    public long getSpoolSize() {
+        return spoolSize.getAsLong();
+    }
+
+    @Override
+    public long getSpoolEvicted() {
+        return spoolEvicted.getAsLong();
+    }
+
+    @Override
+    public int getQueueDepth() {
+        return queueDepth.getAsInt();
+    }
+
+    @Override
+    public int getAlertGroups() {
+        return alertGroups.getAsInt();
+    }
+
+    @Override
+    public long getAlertGroupsEvicted() {
+        return alertGroupsEvicted.getAsLong();
+    }
+
+    @Override
+    public long getFormatLatencyP50Micros() {
+        return formatLatency.getPercentile(0.5) / 1000;
+    }
+
+    @Override
+    public long getFormatLatencyP99Micros() {
+        return formatLatency.getPercentile(0.99) / 1000;
+    }
+
+    @Override
+    public long getFormatLatencyMaxMicros() {
+        return formatLatency.getMax() / 1000;
+    }
+
+    @Override
+    public long getSendLatencyP50Micros() {
+        return sendLatency.getPercentile(0.5) / 1000;
+    }
+
+    @Override
+    public long getSendLatencyP99Micros() {
+        return sendLatency.getPercentile(0.99) / 1000;
+    }
+
+    @Override
+    public long getSendLatencyMaxMicros() {
+        return sendLatency.getMax() / 1000;
+    }
+}
@@ -0,0 +1,53 @@
+package io.github.haloka.telegram.logback;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+/**
+ * Approximate window implemented as a time wheel of fixed buckets with a running total.
+ * Memory is fixed by the bucket count regardless of stage thresholds; counts are exact
+ * to within one bucket width at the trailing edge of the window.
+ */
+class BucketedWindow implements Window {
+    private final long bucketMillis;
+    private final int[] counts;
+    private long currentBucket = Long.MIN_VALUE;
+    private int total = 0;
+
+    BucketedWindow(Duration windowTime, int buckets) {
+        int bucketCount = Math.max(1, buckets);
+        this.bucketMillis = Math.max(1, (windowTime.toMillis() + bucketCount - 1) / bucketCount);
+        this.counts = new int[bucketCount];
+    }
+
+    @Override
+    public void recordEvent(long timestamp) {
+        advance(timestamp / bucketMillis);
+        // Late timestamps from racing threads land in the current bucket
+        counts[(int) (currentBucket % counts.length)]++;
+        total++;
+    }
+
+    @Override
+    public int getEventCount(long timestamp) {
+        advance(timestamp / bucketMillis);
+        return total;
+    }
+
+    private void advance(long bucket) {
+        if (bucket <= currentBucket) {
+            return;
+        }
+        if (currentBucket == Long.MIN_VALUE || bucket - currentBucket >= counts.length) {
+            Arrays.fill(counts, 0);
+            total = 0;
+        } else {
+            for (long b = currentBucket + 1; b <= bucket; b++) {
+                int index = (int) (b % counts.length);
+                total -= counts[index];
+                counts[index] = 0;
+            }
+        }
+        currentBucket = bucket;
+    }
+}
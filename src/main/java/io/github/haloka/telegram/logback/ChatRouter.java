@@ -0,0 +1,179 @@
+package io.github.haloka.telegram.logback;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import io.github.haloka.telegram.logback.config.ChatRoute;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Picks the chats an event goes to. Routes are compiled into a trie over logger name segments
+ * whose nodes hold, per level, a bitmask of the routes ending there; resolving a logger ORs the
+ * masks along its path. Resolved loggers and chat lists are cached, so routing a known logger
+ * is two map lookups. Every matching route receives the alert; events no route matches go to
+ * the default chat.
+ */
+class ChatRouter {
+    static final int MAX_ROUTES = 64;
+    private static final int LEVELS = 5;
+    private static final int MAX_CACHED_LOGGERS = 10_000;
+
+    private final Node root = new Node();
+    private final String[][] routeChats;
+    private final String[] mdcKeys;
+    private final String[] mdcValues;
+    /** Routes with an MDC condition, checked per event */
+    private final long mdcRoutes;
+    private final List<String> defaultChats;
+
+    private final ConcurrentHashMap<String, long[]> loggerRoutes = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, List<String>> chatsByRoutes = new ConcurrentHashMap<>();
+
+    /**
+     * @param defaultChatId chat for events no route matches, may be null to drop them
+     */
+    ChatRouter(List<ChatRoute> routes, String defaultChatId) {
+        if (routes.size() > MAX_ROUTES) {
+            throw new IllegalArgumentException("At most " + MAX_ROUTES + " routes are supported");
+        }
+        routeChats = new String[routes.size()][];
+        mdcKeys = new String[routes.size()];
+        mdcValues = new String[routes.size()];
+        long withMdc = 0;
+        for (int i = 0; i < routes.size(); i++) {
+            ChatRoute route = routes.get(i);
+            routeChats[i] = splitChats(route.getChatId());
+            mdcKeys[i] = route.getMdcKey();
+            mdcValues[i] = route.getMdcValue();
+            if (route.getMdcKey() != null) {
+                withMdc |= 1L << i;
+            }
+            Node node = root;
+            String logger = route.getLogger() == null ? "" : route.getLogger().trim();
+            if (!logger.isEmpty()) {
+                for (String segment : logger.split("\\.")) {
+                    node = node.children.computeIfAbsent(segment, key -> new Node());
+                }
+            }
+            int lowest = levelIndex(Level.toLevel(route.getLevel(), Level.TRACE));
+            for (int level = Math.max(0, lowest); level < LEVELS; level++) {
+                node.routesByLevel[level] |= 1L << i;
+            }
+        }
+        mdcRoutes = withMdc;
+        defaultChats = defaultChatId == null ? Collections.emptyList() : List.of(splitChats(defaultChatId));
+    }
+
+    /**
+     * @return chats to send the event to, empty to drop it
+     */
+    List<String> route(ILoggingEvent event) {
+        int level = levelIndex(event.getLevel());
+        if (level < 0) {
+            return defaultChats;
+        }
+        long matched = resolve(event.getLoggerName())[level];
+        long conditional = matched & mdcRoutes;
+        if (conditional != 0) {
+            Map<String, String> mdc = event.getMDCPropertyMap();
+            for (long remaining = conditional; remaining != 0; remaining &= remaining - 1) {
+                int route = Long.numberOfTrailingZeros(remaining);
+                String value = mdc.get(mdcKeys[route]);
+                if (value == null || (mdcValues[route] != null && !mdcValues[route].equals(value))) {
+                    matched &= ~(1L << route);
+                }
+            }
+        }
+        if (matched == 0) {
+            return defaultChats;
+        }
+        return chatsByRoutes.computeIfAbsent(matched, this::chatsFor);
+    }
+
+    private long[] resolve(String loggerName) {
+        long[] cached = loggerRoutes.get(loggerName);
+        if (cached != null) {
+            return cached;
+        }
+        long[] masks = root.routesByLevel.clone();
+        Node node = root;
+        int start = 0;
+        while (node != null && start <= loggerName.length()) {
+            int end = loggerName.indexOf('.', start);
+            if (end < 0) {
+                end = loggerName.length();
+            }
+            node = node.children.get(loggerName.substring(start, end));
+            if (node != null) {
+                for (int level = 0; level < LEVELS; level++) {
+                    masks[level] |= node.routesByLevel[level];
+                }
+            }
+            start = end + 1;
+        }
+        if (loggerRoutes.size() < MAX_CACHED_LOGGERS) {
+            loggerRoutes.put(loggerName, masks);
+        }
+        return masks;
+    }
+
+    private List<String> chatsFor(long routes) {
+        Set<String> chats = new LinkedHashSet<>();
+        for (long remaining = routes; remaining != 0; remaining &= remaining - 1) {
+            Collections.addAll(chats, routeChats[Long.numberOfTrailingZeros(remaining)]);
+        }
+        return List.copyOf(chats);
+    }
+
+    private static String[] splitChats(String chatIds) {
+        List<String> chats = new ArrayList<>();
+        for (String chat : chatIds.split(",")) {
+            if (!chat.isBlank()) {
+                chats.add(chat.trim());
+            }
+        }
+        return chats.toArray(new String[0]);
+    }
+
+    /**
+     * Every chat any event can be sent to, for messages that concern all of them.
+     */
+    List<String> allChats() {
+        Set<String> chats = new LinkedHashSet<>(defaultChats);
+        for (String[] routed : routeChats) {
+            Collections.addAll(chats, routed);
+        }
+        return List.copyOf(chats);
+    }
+
+    /**
+     * TRACE..ERROR as 0..4, -1 for ALL/OFF.
+     */
+    static int levelIndex(Level level) {
+        switch (level.toInt()) {
+            case Level.TRACE_INT:
+                return 0;
+            case Level.DEBUG_INT:
+                return 1;
+            case Level.INFO_INT:
+                return 2;
+            case Level.WARN_INT:
+                return 3;
+            case Level.ERROR_INT:
+                return 4;
+            default:
+                return -1;
+        }
+    }
+
+    private static final class Node {
+        private final Map<String, Node> children = new HashMap<>();
+        private final long[] routesByLevel = new long[LEVELS];
+    }
+}
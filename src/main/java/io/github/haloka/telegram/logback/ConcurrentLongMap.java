@@ -0,0 +1,144 @@
+package io.github.haloka.telegram.logback;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.LongFunction;
+
+/**
+ * Concurrent map from primitive long keys, so a lookup boxes nothing. Entries live in an
+ * open-addressing table with linear probing. Reads take no lock and only walk the table; writes
+ * are serialized on the map, which suits tables like the alert groups where nearly every access
+ * finds an existing entry. Removed entries leave a tombstone that inserts reuse. A table that
+ * fills up is rebuilt and published whole, so a reader still walking the old one may miss an
+ * entry added since or find one removed since, but never sees a torn one.
+ */
+class ConcurrentLongMap<V> {
+    private static final int MIN_CAPACITY = 16;
+    private static final Entry<?> REMOVED = new Entry<>(0, null);
+
+    private volatile AtomicReferenceArray<Entry<V>> table = new AtomicReferenceArray<>(MIN_CAPACITY);
+    private volatile int size;
+    /** Slots that are not null, live or removed; at most half the table. Guarded by this */
+    private int used;
+
+    private static final class Entry<V> {
+        private final long key;
+        private final V value;
+
+        private Entry(long key, V value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    /** Called for every entry by {@link #forEach} */
+    interface Visitor<V> {
+        void visit(long key, V value);
+    }
+
+    V get(long key) {
+        AtomicReferenceArray<Entry<V>> table = this.table;
+        int mask = table.length() - 1;
+        for (int slot = home(key, mask); ; slot = (slot + 1) & mask) {
+            Entry<V> entry = table.getAcquire(slot);
+            if (entry == null) {
+                return null;
+            }
+            if (entry != REMOVED && entry.key == key) {
+                return entry.value;
+            }
+        }
+    }
+
+    /**
+     * @param factory called at most once, while holding the map's lock
+     */
+    synchronized V computeIfAbsent(long key, LongFunction<V> factory) {
+        V existing = get(key);
+        if (existing != null) {
+            return existing;
+        }
+        V value = factory.apply(key);
+        if (used >= table.length() / 2) {
+            rehash();
+        }
+        AtomicReferenceArray<Entry<V>> table = this.table;
+        int mask = table.length() - 1;
+        int slot = home(key, mask);
+        while (table.get(slot) != null && table.get(slot) != REMOVED) {
+            slot = (slot + 1) & mask;
+        }
+        if (table.get(slot) == null) {
+            used++;
+        }
+        table.setRelease(slot, new Entry<>(key, value));
+        size++;
+        return value;
+    }
+
+    /**
+     * Removes the entry only if it still maps the key to this exact value.
+     */
+    synchronized boolean remove(long key, V value) {
+        AtomicReferenceArray<Entry<V>> table = this.table;
+        int mask = table.length() - 1;
+        for (int slot = home(key, mask); ; slot = (slot + 1) & mask) {
+            Entry<V> entry = table.get(slot);
+            if (entry == null) {
+                return false;
+            }
+            if (entry != REMOVED && entry.key == key) {
+                if (entry.value != value) {
+                    return false;
+                }
+                @SuppressWarnings("unchecked")
+                Entry<V> removed = (Entry<V>) REMOVED;
+                table.setRelease(slot, removed);
+                size--;
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Weakly consistent: entries added or removed meanwhile may or may not be visited.
+     */
+    void forEach(Visitor<V> visitor) {
+        AtomicReferenceArray<Entry<V>> table = this.table;
+        for (int slot = 0; slot < table.length(); slot++) {
+            Entry<V> entry = table.getAcquire(slot);
+            if (entry != null && entry != REMOVED) {
+                visitor.visit(entry.key, entry.value);
+            }
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Copies the live entries into a table where they take at most a quarter of the slots,
+     * dropping the tombstones.
+     */
+    private void rehash() {
+        int capacity = MIN_CAPACITY;
+        while (capacity < (size + 1) * 4) {
+            capacity <<= 1;
+        }
+        AtomicReferenceArray<Entry<V>> fresh = new AtomicReferenceArray<>(capacity);
+        int mask = capacity - 1;
+        forEach((key, value) -> {
+            int slot = home(key, mask);
+            while (fresh.get(slot) != null) {
+                slot = (slot + 1) & mask;
+            }
+            fresh.set(slot, new Entry<>(key, value));
+        });
+        used = size;
+        table = fresh;
+    }
+
+    private static int home(long key, int mask) {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+    }
+}
@@ -0,0 +1,378 @@
+package io.github.haloka.telegram.logback;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.zip.CRC32C;
+
+/**
+ * Write-ahead spool for alerts that could not be delivered. Records are appended to fixed-size
+ * memory-mapped segment files and read back oldest first. A record handed back by {@link #poll}
+ * stays on disk until it is acknowledged through {@link #ack}, once it was delivered or finally
+ * dropped. Every segment starts with a header holding the offset up to which all records were
+ * acknowledged, so a restart resends whatever was still in flight when the last run ended:
+ * delivery is at least once. Fully acknowledged segments are deleted, and when {@code maxSegments}
+ * is reached the oldest segment is evicted with everything not yet acknowledged in it.
+ *
+ * <p>Segment layout: {@code magic:int, ackedOffset:int, reserved:long}, then records of
+ * {@code length:int, crc32c:int, payload}. A zero length marks the end of the written part;
+ * a record whose checksum does not match ends the segment, which covers torn writes.
+ */
+class DiskSpool implements AutoCloseable {
+    private static final int MAGIC = 0x54475350;
+    private static final int HEADER_SIZE = 16;
+    private static final int ACKED_OFFSET = 4;
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final String PREFIX = "spool-";
+    private static final String SUFFIX = ".seg";
+
+    private final Path directory;
+    private final int segmentSize;
+    private final int maxSegments;
+    private final Deque<Segment> segments = new ArrayDeque<>();
+    private long nextSequence;
+    private long evictedRecords;
+
+    DiskSpool(Path directory, int segmentSize, int maxSegments) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maxSegments = maxSegments;
+        Files.createDirectories(directory);
+        recover();
+    }
+
+    /**
+     * @return false if the message is larger than a segment or the spool is closed
+     */
+    synchronized boolean append(TelegramMessage message) throws IOException {
+        byte[] payload = encode(message);
+        int recordSize = RECORD_HEADER_SIZE + payload.length;
+        if (recordSize > segmentSize - HEADER_SIZE) {
+            return false;
+        }
+        Segment tail = segments.peekLast();
+        if (tail == null || tail.sealed || tail.buffer.capacity() - tail.writeOffset < recordSize) {
+            tail = roll();
+        }
+        tail.write(payload);
+        return true;
+    }
+
+    /**
+     * Position of a record handed back by {@link #poll}.
+     */
+    static final class Ticket {
+        private final Segment segment;
+        private final int offset;
+        private final int end;
+
+        private Ticket(Segment segment, int offset, int end) {
+            this.segment = segment;
+            this.offset = offset;
+            this.end = end;
+        }
+    }
+
+    /**
+     * Takes the oldest spooled message not handed back yet, or null if there is none. The message
+     * carries the {@link Ticket} of its record, to be passed to {@link #ack} once it is settled.
+     */
+    synchronized TelegramMessage poll() {
+        for (Segment segment : segments) {
+            TelegramMessage message = segment.next();
+            if (message != null) {
+                return message;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Releases the records of messages that were delivered or dropped for good. Records may be
+     * acknowledged in any order; the header only moves past a record once everything before it
+     * was acknowledged too. Tickets of an evicted or closed segment are ignored.
+     */
+    synchronized void ack(List<Ticket> tickets) {
+        for (Ticket ticket : tickets) {
+            ticket.segment.ack(ticket.offset, ticket.end);
+        }
+        while (segments.size() > 1 || (!segments.isEmpty() && segments.peekFirst().sealed)) {
+            Segment head = segments.peekFirst();
+            if (head.unread > 0) {
+                break;
+            }
+            segments.pollFirst();
+            head.delete();
+        }
+    }
+
+    synchronized long size() {
+        long unread = 0;
+        for (Segment segment : segments) {
+            unread += segment.unread;
+        }
+        return unread;
+    }
+
+    synchronized long getEvictedCount() {
+        return evictedRecords;
+    }
+
+    @Override
+    public synchronized void close() {
+        for (Segment segment : segments) {
+            segment.close();
+        }
+        segments.clear();
+    }
+
+    private Segment roll() throws IOException {
+        if (!segments.isEmpty()) {
+            segments.peekLast().buffer.force();
+        }
+        while (segments.size() >= maxSegments) {
+            Segment oldest = segments.pollFirst();
+            evictedRecords += oldest.unread;
+            oldest.delete();
+        }
+        Path file = directory.resolve(String.format("%s%019d%s", PREFIX, nextSequence++, SUFFIX));
+        Segment segment = Segment.create(file, segmentSize);
+        segments.addLast(segment);
+        return segment;
+    }
+
+    private void recover() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            for (Path file : stream) {
+                files.add(file);
+            }
+        }
+        files.sort(null);
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            long sequence = Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+            nextSequence = Math.max(nextSequence, sequence + 1);
+            Segment segment = Segment.open(file);
+            if (segment == null || segment.unread == 0) {
+                if (segment != null) {
+                    segment.delete();
+                } else {
+                    Files.deleteIfExists(file);
+                }
+                continue;
+            }
+            segments.addLast(segment);
+        }
+        // Recovered segments are only read from; new records go to a fresh segment
+        while (segments.size() > maxSegments) {
+            Segment oldest = segments.pollFirst();
+            evictedRecords += oldest.unread;
+            oldest.delete();
+        }
+    }
+
+    private static byte[] encode(TelegramMessage message) {
+        byte[] chatId = message.getChatId().getBytes(StandardCharsets.UTF_8);
+        byte[] text = message.getText().getBytes(StandardCharsets.UTF_8);
+        byte[] parseMode = message.getParseMode() != null
+            ? message.getParseMode().getBytes(StandardCharsets.UTF_8) : new byte[0];
+        ByteBuffer buffer = ByteBuffer.allocate(
+            16 + chatId.length + text.length + parseMode.length);
+        buffer.putInt(message.getAlertCount());
+        buffer.putInt(chatId.length).put(chatId);
+        buffer.putInt(parseMode.length).put(parseMode);
+        buffer.putInt(text.length).put(text);
+        return buffer.array();
+    }
+
+    private static TelegramMessage decode(MappedByteBuffer buffer, int offset, int length) {
+        ByteBuffer record = buffer.duplicate();
+        record.position(offset).limit(offset + length);
+        int alertCount = record.getInt();
+        String chatId = readString(record);
+        String parseMode = readString(record);
+        String text = readString(record);
+        TelegramMessage message = new TelegramMessage(chatId, text);
+        message.setParseMode(parseMode.isEmpty() ? null : parseMode);
+        message.setAlertCount(alertCount);
+        return message;
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static boolean checksumMatches(MappedByteBuffer buffer, int offset, int length, int expected) {
+        ByteBuffer payload = buffer.duplicate();
+        payload.position(offset).limit(offset + length);
+        CRC32C crc = new CRC32C();
+        crc.update(payload);
+        return (int) crc.getValue() == expected;
+    }
+
+    private static final class Segment {
+        private final Path file;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        /** Next record to hand back */
+        private int readOffset = HEADER_SIZE;
+        /** Every record before it is acknowledged; persisted in the header */
+        private int ackedOffset = HEADER_SIZE;
+        private int writeOffset = HEADER_SIZE;
+        /** Acknowledged records past {@link #ackedOffset}, end offset by start offset */
+        private final TreeMap<Integer, Integer> ackedAhead = new TreeMap<>();
+        /** Recovered from an earlier run; only read from */
+        private boolean sealed;
+        /** Closed or deleted; late acknowledgements are ignored */
+        private boolean released;
+        /** Records not acknowledged yet */
+        private long unread;
+
+        private Segment(Path file, FileChannel channel, MappedByteBuffer buffer) {
+            this.file = file;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+
+        static Segment create(Path file, int size) throws IOException {
+            FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(ACKED_OFFSET, HEADER_SIZE);
+            return new Segment(file, channel, buffer);
+        }
+
+        /**
+         * Maps an existing segment and finds the end of its valid records, or null if it is not a segment.
+         */
+        static Segment open(Path file) throws IOException {
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            long size = channel.size();
+            if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+                channel.close();
+                return null;
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            int ackedOffset = buffer.getInt(ACKED_OFFSET);
+            if (buffer.getInt(0) != MAGIC || ackedOffset < HEADER_SIZE || ackedOffset > size) {
+                channel.close();
+                return null;
+            }
+            Segment segment = new Segment(file, channel, buffer);
+            segment.sealed = true;
+            segment.writeOffset = (int) size;
+            int offset = HEADER_SIZE;
+            while (true) {
+                int length = segment.validLength(offset);
+                if (length <= 0) {
+                    break;
+                }
+                if (offset >= ackedOffset) {
+                    segment.unread++;
+                }
+                offset += RECORD_HEADER_SIZE + length;
+            }
+            segment.writeOffset = offset;
+            segment.ackedOffset = Math.min(ackedOffset, offset);
+            segment.readOffset = segment.ackedOffset;
+            return segment;
+        }
+
+        void write(byte[] payload) {
+            CRC32C crc = new CRC32C();
+            crc.update(payload);
+            buffer.putInt(writeOffset + 4, (int) crc.getValue());
+            buffer.put(writeOffset + RECORD_HEADER_SIZE, payload);
+            // Length last, so a crash mid-record leaves a zero length behind
+            buffer.putInt(writeOffset, payload.length);
+            writeOffset += RECORD_HEADER_SIZE + payload.length;
+            unread++;
+        }
+
+        TelegramMessage next() {
+            int length = validLength(readOffset);
+            if (length <= 0) {
+                return null;
+            }
+            int offset = readOffset;
+            readOffset += RECORD_HEADER_SIZE + length;
+            TelegramMessage message;
+            try {
+                message = decode(buffer, offset + RECORD_HEADER_SIZE, length);
+            } catch (BufferUnderflowException | IllegalArgumentException e) {
+                // Nobody could ever deliver it
+                ack(offset, readOffset);
+                return next();
+            }
+            message.setSpoolTickets(List.of(new Ticket(this, offset, readOffset)));
+            return message;
+        }
+
+        void ack(int offset, int end) {
+            if (released) {
+                return;
+            }
+            if (offset != ackedOffset) {
+                ackedAhead.put(offset, end);
+            } else {
+                ackedOffset = end;
+                for (Integer next = ackedAhead.remove(ackedOffset); next != null; next = ackedAhead.remove(ackedOffset)) {
+                    ackedOffset = next;
+                }
+                buffer.putInt(ACKED_OFFSET, ackedOffset);
+            }
+            unread--;
+        }
+
+        /**
+         * Payload length of an intact record at offset, or 0 at the end of the written part.
+         */
+        private int validLength(int offset) {
+            if (offset + RECORD_HEADER_SIZE > writeOffset) {
+                return 0;
+            }
+            int length = buffer.getInt(offset);
+            if (length <= 0 || offset + RECORD_HEADER_SIZE + length > writeOffset) {
+                return 0;
+            }
+            int crc = buffer.getInt(offset + 4);
+            return checksumMatches(buffer, offset + RECORD_HEADER_SIZE, length, crc) ? length : 0;
+        }
+
+        void close() {
+            released = true;
+            buffer.force();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // Nothing left to release
+            }
+        }
+
+        void delete() {
+            released = true;
+            try {
+                channel.close();
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                // Deleted on the next start instead
+            }
+        }
+    }
+}
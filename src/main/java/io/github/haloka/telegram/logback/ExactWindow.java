@@ -0,0 +1,66 @@
+package io.github.haloka.telegram.logback;
+
+import java.time.Duration;
+
+/**
+ * Exact window kept as a deque of event timestamps in a growable ring. Expired timestamps
+ * are dropped from the head as time moves on, so both record and count are amortized O(1).
+ * The ring only grows as far as the group actually bursts, up to {@code capacity}, after
+ * which the oldest timestamp is overwritten and the count saturates.
+ */
+class ExactWindow implements Window {
+    private static final int INITIAL_SIZE = 4;
+
+    private final long windowMillis;
+    private final int capacity;
+    private long[] timestamps;
+    private int head = 0;
+    private int size = 0;
+    private long latest = Long.MIN_VALUE;
+
+    ExactWindow(Duration windowTime, int capacity) {
+        this.windowMillis = windowTime.toMillis();
+        this.capacity = Math.max(1, capacity);
+        this.timestamps = new long[Math.min(INITIAL_SIZE, this.capacity)];
+    }
+
+    @Override
+    public void recordEvent(long timestamp) {
+        // Timestamps are taken before the group lock, so keep the deque monotonic
+        latest = Math.max(latest, timestamp);
+        expire(latest);
+        if (size == timestamps.length) {
+            if (size < capacity) {
+                grow();
+            } else {
+                head = (head + 1) % timestamps.length;
+                size--;
+            }
+        }
+        timestamps[(head + size) % timestamps.length] = latest;
+        size++;
+    }
+
+    @Override
+    public int getEventCount(long timestamp) {
+        expire(timestamp);
+        return size;
+    }
+
+    private void expire(long timestamp) {
+        long windowStart = timestamp - windowMillis;
+        while (size > 0 && timestamps[head] <= windowStart) {
+            head = (head + 1) % timestamps.length;
+            size--;
+        }
+    }
+
+    private void grow() {
+        long[] grown = new long[Math.min(capacity, timestamps.length * 2)];
+        for (int i = 0; i < size; i++) {
+            grown[i] = timestamps[(head + i) % timestamps.length];
+        }
+        timestamps = grown;
+        head = 0;
+    }
+}
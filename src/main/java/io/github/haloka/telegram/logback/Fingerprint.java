@@ -0,0 +1,103 @@
+package io.github.haloka.telegram.logback;
+
+/**
+ * 64-bit FNV-1a hashing over chars, finished with the MurmurHash3 mixer.
+ * Used to derive alert group keys straight from the event fields without
+ * building any intermediate strings.
+ */
+final class Fingerprint {
+    static final long SEED = 0xcbf29ce484222325L;
+    private static final long PRIME = 0x100000001b3L;
+    private static final char SEPARATOR = '\u0000';
+    private static final char TRUNCATED = '\u2026';
+
+    private Fingerprint() {
+    }
+
+    static long mix(long hash, char c) {
+        return (hash ^ c) * PRIME;
+    }
+
+    static long mix(long hash, long value) {
+        for (int i = 0; i < 4; i++) {
+            hash = mix(hash, (char) (value >>> (i * 16)));
+        }
+        return hash;
+    }
+
+    /**
+     * Mixes at most {@code maxLength} leading chars of {@code value}, followed by a
+     * separator so adjacent fields cannot bleed into each other.
+     */
+    static long mix(long hash, CharSequence value, int maxLength) {
+        if (value != null) {
+            int length = Math.min(value.length(), maxLength);
+            for (int i = 0; i < length; i++) {
+                hash = mix(hash, value.charAt(i));
+            }
+        }
+        return mix(hash, SEPARATOR);
+    }
+
+    /**
+     * Like {@link #mix(long, CharSequence, int)}, but a value longer than {@code maxLength} is
+     * marked as cut, the way {@link Utils#getSubMessage} appends "...", so it does not share a
+     * fingerprint with a value that is exactly its first {@code maxLength} chars.
+     */
+    static long mixPrefix(long hash, CharSequence value, int maxLength) {
+        if (value == null || value.length() <= maxLength) {
+            return mix(hash, value, maxLength);
+        }
+        for (int i = 0; i < maxLength; i++) {
+            hash = mix(hash, value.charAt(i));
+        }
+        return mix(mix(hash, TRUNCATED), SEPARATOR);
+    }
+
+    /**
+     * Like {@link #mix(long, CharSequence, int)}, but every run of hex digits and dashes
+     * that contains a decimal digit (ids, counters, UUIDs, hex addresses) is hashed as a
+     * single {@code #}, so messages differing only in such values share a fingerprint.
+     */
+    static long mixNormalized(long hash, CharSequence value, int maxLength) {
+        if (value != null) {
+            int length = Math.min(value.length(), maxLength);
+            int i = 0;
+            while (i < length) {
+                char c = value.charAt(i);
+                if (!isVariableChar(c)) {
+                    hash = mix(hash, c);
+                    i++;
+                    continue;
+                }
+                int runStart = i;
+                boolean hasDigit = false;
+                while (i < length && isVariableChar(value.charAt(i))) {
+                    hasDigit |= Character.isDigit(value.charAt(i));
+                    i++;
+                }
+                if (hasDigit) {
+                    hash = mix(hash, '#');
+                } else {
+                    for (int j = runStart; j < i; j++) {
+                        hash = mix(hash, value.charAt(j));
+                    }
+                }
+            }
+        }
+        return mix(hash, SEPARATOR);
+    }
+
+    static boolean isVariableChar(char c) {
+        return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F') || c == '-';
+    }
+
+    static long finish(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,55 @@
+package io.github.haloka.telegram.logback;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket in its GCRA form: a single "theoretical arrival time" advanced by
+ * CAS. Permits are spaced {@code period / permits} apart, with bursts of up to
+ * {@code burst} permits.
+ */
+class GcraLimiter {
+    private final long intervalNanos;
+    private final long toleranceNanos;
+    private final AtomicLong theoreticalArrival = new AtomicLong(Long.MIN_VALUE);
+
+    GcraLimiter(int permits, Duration period, int burst) {
+        this.intervalNanos = Math.max(1, period.toNanos() / permits);
+        this.toleranceNanos = intervalNanos * (Math.max(1, burst) - 1);
+    }
+
+    /**
+     * @param now {@link System#nanoTime()}
+     * @return 0 when a permit was taken, otherwise nanos until one becomes available
+     */
+    long tryAcquire(long now) {
+        while (true) {
+            long tat = theoreticalArrival.get();
+            long base = Math.max(tat, now);
+            long allowAt = base - toleranceNanos;
+            if (now < allowAt) {
+                return allowAt - now;
+            }
+            if (theoreticalArrival.compareAndSet(tat, base + intervalNanos)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Takes the next permit even when it is not available yet, so callers waiting for their
+     * permits line up in order instead of all retrying at the same instant.
+     *
+     * @param now {@link System#nanoTime()}
+     * @return 0 when the permit may be used now, otherwise nanos until it may
+     */
+    long reserve(long now) {
+        while (true) {
+            long tat = theoreticalArrival.get();
+            long base = Math.max(tat, now);
+            if (theoreticalArrival.compareAndSet(tat, base + intervalNanos)) {
+                return Math.max(0, base - toleranceNanos - now);
+            }
+        }
+    }
+}
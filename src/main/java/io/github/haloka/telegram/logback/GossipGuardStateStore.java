@@ -0,0 +1,191 @@
+package io.github.haloka.telegram.logback;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Send leases agreed on by gossiping over UDP with a static list of peers. Leases are decided from
+ * a local map; taking or renewing one queues an announcement that a background thread batches into
+ * datagrams, so the logging thread never touches the network. Two nodes claiming the same group
+ * at once both send, and the lower node id keeps the lease once the announcements cross, so a
+ * storm costs at most one duplicate per node. A lost datagram costs a duplicate, never an alert.
+ *
+ * <p>Datagram layout: {@code magic:int, sender:long}, then up to {@code MAX_CLAIMS} claims of
+ * {@code groupKey:long, owner:long, remainingMillis:int}. Remaining time rather than an expiry
+ * is sent, so the nodes' clocks need not agree.
+ *
+ * <p>Only datagrams sent from a listed peer's address and port are applied, so a host that can
+ * reach the port cannot claim groups and silence them. Peers must therefore be listed by the
+ * address they send from.
+ */
+class GossipGuardStateStore implements GuardStateStore {
+    private static final int MAGIC = 0x54474750;
+    private static final int HEADER_SIZE = 12;
+    private static final int CLAIM_SIZE = 20;
+    private static final int MAX_CLAIMS = 60;
+    private static final long FLUSH_NANOS = 5_000_000;
+    /** Announcements waiting beyond this are dropped, costing a duplicate at worst */
+    private static final int MAX_OUTBOX = 10_000;
+
+    private final DatagramChannel channel;
+    private final List<InetSocketAddress> peers;
+    private final Set<InetSocketAddress> trusted;
+    private final long node = ThreadLocalRandom.current().nextLong(1, Long.MAX_VALUE);
+    private final ConcurrentHashMap<Long, Lease> leases = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Lease> outbox = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger announcements = new AtomicInteger();
+    private final Thread sender;
+    private volatile boolean running = true;
+
+    private static final class Lease {
+        private final long groupKey;
+        private final long owner;
+        private final long expiresAt;
+
+        private Lease(long groupKey, long owner, long expiresAt) {
+            this.groupKey = groupKey;
+            this.owner = owner;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    GossipGuardStateStore(InetSocketAddress bind, List<InetSocketAddress> peers) throws IOException {
+        this.peers = peers;
+        this.trusted = new HashSet<>(peers);
+        this.channel = DatagramChannel.open();
+        try {
+            channel.bind(bind);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        sender = daemon("telegram-logging-gossip-send", this::sendLoop);
+        daemon("telegram-logging-gossip-receive", this::receiveLoop);
+    }
+
+    @Override
+    public boolean tryAcquire(long groupKey, long now, long leaseMillis) {
+        Lease current = leases.get(groupKey);
+        // Own leases are renewed, and announced again, only once half of them is gone
+        if (current != null && current.expiresAt > now
+            && (current.owner != node || current.expiresAt - now > leaseMillis / 2)) {
+            return current.owner == node;
+        }
+        Lease mine = new Lease(groupKey, node, now + leaseMillis);
+        Lease held = leases.compute(groupKey, (key, lease) ->
+            lease != null && lease.owner != node && lease.expiresAt > now ? lease : mine);
+        if (held != mine) {
+            return false;
+        }
+        if (announcements.incrementAndGet() <= MAX_OUTBOX) {
+            outbox.add(mine);
+        } else {
+            announcements.decrementAndGet();
+        }
+        return true;
+    }
+
+    @Override
+    public void evictExpired(long now) {
+        leases.values().removeIf(lease -> lease.expiresAt <= now);
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(sender);
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // Nothing left to release
+        }
+    }
+
+    /**
+     * Takes a peer's claim unless a live lease of a lower node id is held.
+     */
+    private void apply(long groupKey, long owner, long expiresAt, long now) {
+        Lease remote = new Lease(groupKey, owner, expiresAt);
+        leases.compute(groupKey, (key, lease) -> lease == null || lease.expiresAt <= now
+            || lease.owner == owner || owner < lease.owner ? remote : lease);
+    }
+
+    private void sendLoop() {
+        ByteBuffer packet = ByteBuffer.allocate(HEADER_SIZE + MAX_CLAIMS * CLAIM_SIZE);
+        while (running) {
+            Lease lease = outbox.poll();
+            if (lease == null) {
+                LockSupport.parkNanos(FLUSH_NANOS);
+                continue;
+            }
+            long now = System.currentTimeMillis();
+            packet.clear();
+            packet.putInt(MAGIC).putLong(node);
+            int claims = 0;
+            do {
+                announcements.decrementAndGet();
+                packet.putLong(lease.groupKey).putLong(lease.owner)
+                    .putInt((int) Math.min(Integer.MAX_VALUE, Math.max(0, lease.expiresAt - now)));
+                claims++;
+            } while (claims < MAX_CLAIMS && (lease = outbox.poll()) != null);
+            packet.flip();
+            for (InetSocketAddress peer : peers) {
+                try {
+                    channel.send(packet, peer);
+                } catch (IOException e) {
+                    if (!channel.isOpen()) {
+                        return;
+                    }
+                    // Best effort: the peer sends its own duplicate at worst
+                }
+                packet.rewind();
+            }
+        }
+    }
+
+    private void receiveLoop() {
+        ByteBuffer packet = ByteBuffer.allocate(HEADER_SIZE + MAX_CLAIMS * CLAIM_SIZE);
+        while (running) {
+            packet.clear();
+            SocketAddress source;
+            try {
+                source = channel.receive(packet);
+            } catch (IOException e) {
+                if (!channel.isOpen()) {
+                    return;
+                }
+                continue;
+            }
+            if (!trusted.contains(source)) {
+                continue;
+            }
+            packet.flip();
+            // Own datagrams come back when the peer list includes this node
+            if (packet.remaining() < HEADER_SIZE || packet.getInt() != MAGIC || packet.getLong() == node) {
+                continue;
+            }
+            long now = System.currentTimeMillis();
+            while (packet.remaining() >= CLAIM_SIZE) {
+                apply(packet.getLong(), packet.getLong(), now + packet.getInt(), now);
+            }
+        }
+    }
+
+    private static Thread daemon(String name, Runnable loop) {
+        Thread thread = new Thread(loop, name);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+}
@@ -0,0 +1,20 @@
+package io.github.haloka.telegram.logback;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+
+/**
+ * Decides which logging events belong to the same alert group in {@link RateGuard}.
+ */
+interface GroupKeyStrategy {
+
+    /**
+     * Primitive group identity, evaluated for every event reaching the guard.
+     */
+    long fingerprint(ILoggingEvent event);
+
+    /**
+     * Human-readable group name used in suppression notices. Only evaluated when a
+     * group is seen for the first time.
+     */
+    String label(ILoggingEvent event);
+}
@@ -0,0 +1,38 @@
+package io.github.haloka.telegram.logback;
+
+/**
+ * State that {@link RateGuard} shares with the other nodes running the same appender, so an alert
+ * seen by many processes is sent by one of them. Per group, one node holds a send lease; it sends
+ * the group's alerts and suppression notices while the others count the events silently. Select a
+ * built-in store with {@code clusterStore}, or plug one in with
+ * {@code <guardStateStore class="..."/>} inside the appender.
+ *
+ * <p>{@link #tryAcquire} runs on the logging thread for every alert that passed suppression, so
+ * implementations must answer from local state and never wait on the network or a lock held by
+ * another process. When in doubt they should grant the lease: a duplicate alert is cheaper than
+ * a lost one.
+ */
+public interface GuardStateStore {
+
+    /**
+     * Takes or renews this node's send lease on a group.
+     *
+     * @param groupKey    fingerprint of the alert group
+     * @param now         wall-clock time in milliseconds
+     * @param leaseMillis how long the lease lasts without renewal
+     * @return true if this node holds the lease and should send, false if another node does
+     */
+    boolean tryAcquire(long groupKey, long now, long leaseMillis);
+
+    /**
+     * Drops expired leases. Called from the appender's scheduler, never on append.
+     */
+    default void evictExpired(long now) {
+    }
+
+    /**
+     * Releases files, sockets and threads when the appender stops.
+     */
+    default void close() {
+    }
+}
@@ -6,6 +6,7 @@ import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.time.Duration;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 class HttpClient {
 
@@ -45,6 +46,8 @@ class HttpClient {
             );
 
             return handleResponse(response);
+        } catch (RequestException e) {
+            throw e;
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
             throw new RequestException("GET request was interrupted", e);
@@ -55,12 +58,12 @@ class HttpClient {
         }
     }
 
-    String post(String url, String body, Map<String, String> headers) {
+    String post(URI uri, byte[] body, Map<String, String> headers) {
         try {
             HttpRequest.Builder builder = HttpRequest.newBuilder()
-                .uri(URI.create(url))
+                .uri(uri)
                 .timeout(readTimeout)
-                .POST(HttpRequest.BodyPublishers.ofString(body));
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body));
 
             if (headers != null) {
                 headers.forEach(builder::header);
@@ -72,6 +75,8 @@ class HttpClient {
             );
 
             return handleResponse(response);
+        } catch (RequestException e) {
+            throw e;
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
             throw new RequestException("GET request was interrupted", e);
@@ -82,22 +87,60 @@ class HttpClient {
         }
     }
 
+    /**
+     * Non-blocking variant of {@link #post}. The returned future completes exceptionally
+     * with a {@link RequestException} on non-2xx responses.
+     */
+    CompletableFuture<String> postAsync(URI uri, byte[] body, Map<String, String> headers) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder()
+            .uri(uri)
+            .timeout(readTimeout)
+            .POST(HttpRequest.BodyPublishers.ofByteArray(body));
+
+        if (headers != null) {
+            headers.forEach(builder::header);
+        }
+
+        return client.sendAsync(builder.build(), HttpResponse.BodyHandlers.ofString())
+            .thenApply(this::handleResponse);
+    }
+
     private String handleResponse(HttpResponse<String> response) {
         int statusCode = response.statusCode();
         if (statusCode >= 200 && statusCode < 300) {
             return response.body();
         }
 
-        throw new RequestException("Request failed with status code: " + statusCode);
+        throw new RequestException("Request failed with status code: " + statusCode, statusCode, response.body());
     }
 
     static class RequestException extends RuntimeException {
+        /** HTTP status of the failed response, -1 when no response was received */
+        private final int statusCode;
+        private final String body;
+
         public RequestException(String message) {
-            super(message);
+            this(message, -1, null);
         }
 
         public RequestException(String message, Throwable cause) {
             super(message, cause);
+            this.statusCode = -1;
+            this.body = null;
+        }
+
+        public RequestException(String message, int statusCode, String body) {
+            super(message);
+            this.statusCode = statusCode;
+            this.body = body;
+        }
+
+        public int getStatusCode() {
+            return statusCode;
+        }
+
+        public String getBody() {
+            return body;
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,84 @@
+package io.github.haloka.telegram.logback;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Log-linear latency histogram in the spirit of HdrHistogram: every power of two is split
+ * into four sub-buckets, so recorded values are kept within 25% over the full long range.
+ * Buckets are {@link LongAdder}s, so concurrent recording never contends on one counter.
+ */
+class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 2;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = 64 << SUB_BUCKET_BITS;
+
+    private final LongAdder[] counts = new LongAdder[BUCKETS];
+    private final LongAdder total = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    LatencyHistogram() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = new LongAdder();
+        }
+    }
+
+    void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts[index(value)].increment();
+        total.increment();
+        max.accumulate(value);
+    }
+
+    long getCount() {
+        return total.sum();
+    }
+
+    long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Upper bound of the bucket holding the given percentile, capped at the maximum seen.
+     *
+     * @param percentile between 0 and 1
+     */
+    long getPercentile(double percentile) {
+        long[] snapshot = new long[BUCKETS];
+        long recorded = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts[i].sum();
+            recorded += snapshot[i];
+        }
+        if (recorded == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(percentile * recorded));
+        long cumulative = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            cumulative += snapshot[i];
+            if (cumulative >= target) {
+                return Math.min(upperBound(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    static int index(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int msb = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (msb - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return ((msb - SUB_BUCKET_BITS + 1) << SUB_BUCKET_BITS) + sub;
+    }
+
+    static long upperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int msb = (index >>> SUB_BUCKET_BITS) + SUB_BUCKET_BITS - 1;
+        long sub = index & (SUB_BUCKETS - 1);
+        return ((SUB_BUCKETS + sub + 1) << (msb - SUB_BUCKET_BITS)) - 1;
+    }
+}
@@ -0,0 +1,85 @@
+package io.github.haloka.telegram.logback;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Coalesces drained alerts into as few sendMessage calls as possible. Alerts are grouped
+ * per chat in arrival order and packed up to the character limit, only ever split on
+ * alert boundaries. An alert that is too long on its own is sent unchanged.
+ */
+class MessageBatcher {
+    static final String SEPARATOR = "\n";
+
+    private final int maxChars;
+
+    MessageBatcher(int maxChars) {
+        this.maxChars = maxChars;
+    }
+
+    List<TelegramMessage> coalesce(List<TelegramMessage> messages) {
+        if (messages.size() == 1) {
+            return messages;
+        }
+
+        Map<String, List<TelegramMessage>> byChat = new LinkedHashMap<>();
+        List<TelegramMessage> packed = new ArrayList<>();
+        for (TelegramMessage message : messages) {
+            if (message.getEditMessageId() != 0) {
+                // Edits replace one specific message and cannot be packed
+                packed.add(message);
+                continue;
+            }
+            byChat.computeIfAbsent(message.getChatId() + '\u0000' + message.getParseMode(), key -> new ArrayList<>())
+                .add(message);
+        }
+
+        for (List<TelegramMessage> chatMessages : byChat.values()) {
+            TelegramMessage current = null;
+            StringBuilder text = new StringBuilder();
+            for (TelegramMessage message : chatMessages) {
+                if (current != null && text.length() + SEPARATOR.length() + message.getText().length() > maxChars) {
+                    current.setText(text.toString());
+                    packed.add(current);
+                    current = null;
+                }
+                if (current == null) {
+                    current = copyOf(message);
+                    text.setLength(0);
+                    text.append(message.getText());
+                } else {
+                    text.append(SEPARATOR).append(message.getText());
+                    current.setAlertCount(current.getAlertCount() + message.getAlertCount());
+                    current.setGroupKey(0);
+                    // One reserved slot covers the packed request
+                    current.setThrottleReserved(current.isThrottleReserved() || message.isThrottleReserved());
+                    // The most retried alert decides, so packing never buys a retry more attempts
+                    current.setAttempts(Math.max(current.getAttempts(), message.getAttempts()));
+                    if (message.getSpoolTickets() != null) {
+                        List<DiskSpool.Ticket> tickets = new ArrayList<>(message.getSpoolTickets());
+                        if (current.getSpoolTickets() != null) {
+                            tickets.addAll(current.getSpoolTickets());
+                        }
+                        current.setSpoolTickets(tickets);
+                    }
+                }
+            }
+            current.setText(text.toString());
+            packed.add(current);
+        }
+        return packed;
+    }
+
+    private static TelegramMessage copyOf(TelegramMessage message) {
+        TelegramMessage copy = new TelegramMessage(message.getChatId(), message.getText());
+        copy.setParseMode(message.getParseMode());
+        copy.setAlertCount(message.getAlertCount());
+        copy.setGroupKey(message.getGroupKey());
+        copy.setAttempts(message.getAttempts());
+        copy.setThrottleReserved(message.isThrottleReserved());
+        copy.setSpoolTickets(message.getSpoolTickets());
+        return copy;
+    }
+}
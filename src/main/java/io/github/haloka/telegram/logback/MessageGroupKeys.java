@@ -0,0 +1,30 @@
+package io.github.haloka.telegram.logback;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.IThrowableProxy;
+
+/**
+ * Groups events by throwable class, message prefix and throwable message prefix.
+ * Produces the same groups as {@link Utils#generateGroupKey} without allocating.
+ */
+class MessageGroupKeys implements GroupKeyStrategy {
+
+    @Override
+    public long fingerprint(ILoggingEvent event) {
+        IThrowableProxy throwable = event.getThrowableProxy();
+        long hash = Fingerprint.SEED;
+        if (throwable != null) {
+            hash = Fingerprint.mix(hash, throwable.getClassName(), Integer.MAX_VALUE);
+        }
+        hash = Fingerprint.mixPrefix(hash, event.getMessage(), Utils.GROUP_MESSAGE_LENGTH);
+        if (throwable != null) {
+            hash = Fingerprint.mixPrefix(hash, throwable.getMessage(), Utils.GROUP_THROWABLE_LENGTH);
+        }
+        return Fingerprint.finish(hash);
+    }
+
+    @Override
+    public String label(ILoggingEvent event) {
+        return Utils.generateGroupKey(event.getMessage(), event.getThrowableProxy());
+    }
+}
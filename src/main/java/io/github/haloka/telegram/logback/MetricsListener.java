@@ -0,0 +1,24 @@
+package io.github.haloka.telegram.logback;
+
+/**
+ * Callback for forwarding appender metrics to an external system. Configure it with
+ * {@code <metricsListener class="..."/>} inside the appender. Methods are invoked on the
+ * logging and sender threads as things happen, so implementations must be thread-safe
+ * and cheap, e.g. increment a Micrometer counter.
+ */
+public interface MetricsListener {
+
+    /**
+     * @param name  one of the {@code TelegramAppenderMetrics} counter names, e.g. "alerts.sent"
+     * @param delta amount the counter grew by
+     */
+    default void onCount(String name, long delta) {
+    }
+
+    /**
+     * @param name  "latency.format" or "latency.send"
+     * @param nanos measured duration
+     */
+    default void onLatency(String name, long nanos) {
+    }
+}
@@ -0,0 +1,96 @@
+package io.github.haloka.telegram.logback;
+
+import java.util.Arrays;
+
+/**
+ * Decides which stack frames belong to the application, from package prefixes compiled into a
+ * char trie. A class name is matched by walking the trie along its chars, so no string is built
+ * per frame. A prefix matches whole name segments only ("java" covers {@code java.util.List}
+ * but not {@code javax.sql.DataSource}), and the longest matching prefix wins, so an include
+ * can carve a package out of a broader exclude.
+ */
+class PackageFilter {
+    static final String DEFAULT_EXCLUDES = "java,javax,sun,org.springframework";
+    static final PackageFilter DEFAULT = new PackageFilter(null, DEFAULT_EXCLUDES);
+
+    private static final byte NONE = 0;
+    private static final byte INCLUDE = 1;
+    private static final byte EXCLUDE = 2;
+
+    private final Node root = new Node();
+
+    private static final class Node {
+        private char[] labels = new char[0];
+        private Node[] children = new Node[0];
+        private byte rule = NONE;
+
+        private Node child(char c) {
+            for (int i = 0; i < labels.length; i++) {
+                if (labels[i] == c) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        private Node addChild(char c) {
+            Node child = child(c);
+            if (child == null) {
+                child = new Node();
+                labels = Arrays.copyOf(labels, labels.length + 1);
+                children = Arrays.copyOf(children, children.length + 1);
+                labels[labels.length - 1] = c;
+                children[children.length - 1] = child;
+            }
+            return child;
+        }
+    }
+
+    /**
+     * @param includes comma-separated packages or classes always shown, may be null
+     * @param excludes comma-separated packages or classes hidden, may be null
+     */
+    PackageFilter(String includes, String excludes) {
+        add(excludes, EXCLUDE);
+        add(includes, INCLUDE);
+    }
+
+    /**
+     * @return false if the longest matching prefix is an exclude
+     */
+    boolean isRelevant(String className) {
+        byte rule = NONE;
+        Node node = root;
+        for (int i = 0; i < className.length() && node != null; i++) {
+            node = node.child(className.charAt(i));
+            if (node != null && node.rule != NONE && isBoundary(className, i + 1)) {
+                rule = node.rule;
+            }
+        }
+        return rule != EXCLUDE;
+    }
+
+    private void add(String prefixes, byte rule) {
+        if (prefixes == null) {
+            return;
+        }
+        for (String prefix : prefixes.split(",")) {
+            String trimmed = prefix.trim();
+            while (trimmed.endsWith(".")) {
+                trimmed = trimmed.substring(0, trimmed.length() - 1);
+            }
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            Node node = root;
+            for (int i = 0; i < trimmed.length(); i++) {
+                node = node.addChild(trimmed.charAt(i));
+            }
+            node.rule = rule;
+        }
+    }
+
+    private static boolean isBoundary(String className, int index) {
+        return index == className.length() || className.charAt(index) == '.' || className.charAt(index) == '$';
+    }
+}
@@ -0,0 +1,91 @@
+package io.github.haloka.telegram.logback;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Writes sendMessage bodies with Jackson's streaming generator straight into a pooled UTF-8
+ * buffer, so a message is encoded once and the only allocation left is the exact-size body array.
+ * The body has to be a copy: async sends hold on to it after the sender moved on.
+ *
+ * <p>Buffers are borrowed from a bounded pool rather than kept per thread, because with virtual
+ * send threads every request runs on a new thread and a thread-local buffer would never be reused.
+ * When more threads encode at once than the pool holds, the extra buffers are simply dropped.
+ */
+class PayloadEncoder {
+    private final JsonFactory factory;
+    private final ArrayBlockingQueue<Buffer> buffers;
+
+    /**
+     * @param poolSize buffers kept for reuse, about the number of threads encoding at once
+     */
+    PayloadEncoder(JsonFactory factory, int poolSize) {
+        this.factory = factory;
+        this.buffers = new ArrayBlockingQueue<>(Math.max(1, poolSize));
+    }
+
+    byte[] encode(TelegramMessage message) throws IOException {
+        Buffer buffer = buffers.poll();
+        if (buffer == null) {
+            buffer = new Buffer();
+        }
+        try {
+            return encode(message, buffer);
+        } finally {
+            buffers.offer(buffer);
+        }
+    }
+
+    private byte[] encode(TelegramMessage message, Buffer buffer) throws IOException {
+        buffer.count = 0;
+        try (JsonGenerator generator = factory.createGenerator(buffer, JsonEncoding.UTF8)) {
+            generator.writeStartObject();
+            generator.writeStringField("chat_id", message.getChatId());
+            if (message.getEditMessageId() != 0) {
+                generator.writeNumberField("message_id", message.getEditMessageId());
+            }
+            generator.writeStringField("text", message.getText());
+            if (message.getParseMode() != null) {
+                generator.writeStringField("parse_mode", message.getParseMode());
+            }
+            generator.writeEndObject();
+        }
+        return buffer.toByteArray();
+    }
+
+    /**
+     * Unsynchronized, reusable ByteArrayOutputStream.
+     */
+    private static final class Buffer extends OutputStream {
+        private byte[] bytes = new byte[8192];
+        private int count;
+
+        @Override
+        public void write(int b) {
+            ensureCapacity(count + 1);
+            bytes[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] source, int offset, int length) {
+            ensureCapacity(count + length);
+            System.arraycopy(source, offset, bytes, count, length);
+            count += length;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(bytes, count);
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (capacity > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(capacity, bytes.length * 2));
+            }
+        }
+    }
+}
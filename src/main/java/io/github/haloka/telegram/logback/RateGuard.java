@@ -1,34 +1,52 @@
 package io.github.haloka.telegram.logback;
 
+import ch.qos.logback.classic.spi.ILoggingEvent;
 import io.github.haloka.telegram.logback.config.GuardConfig;
 import io.github.haloka.telegram.logback.config.GuardStage;
 import java.time.Duration;
-import java.time.Instant;
 import java.util.List;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import lombok.Data;
 
 class RateGuard {
+    static final String OVERFLOW_LABEL = "Other alerts (group limit reached)";
+
     private final List<GuardStage> guardStages;
     private final Duration windowTime;
-    private final int windowSlotSize;
-    private final String timezone;
-    private final ConcurrentHashMap<String, GuardState> alertStates = new ConcurrentHashMap<>();
+    private final int windowCapacity;
+    private final String windowType;
+    private final int windowBuckets;
+    private final TimestampFormatter timestamps;
+    private final GroupKeyStrategy groupKeys;
+    private final ConcurrentLongMap<GuardState> alertStates = new ConcurrentLongMap<>();
+    private final int maxGroups;
+    private final long idleMillis;
+    /** Replaced by the sweeper once idle, like any group, so old storms do not suppress new ones */
+    private volatile GuardState overflowState;
+    private final AtomicLong evictedCount = new AtomicLong();
+    private final GuardStateStore store;
+    private final long leaseMillis;
 
+    /**
+     * Mutable state of one alert group; every access happens while holding its monitor.
+     */
     @Data
     private static class GuardState {
         private final String alertType;
         private final Window eventWindow;
+        private volatile long lastSeen = 0;
+        private boolean evicted = false;
         private long suppressionStartTime = 0;
         private Duration suppressionDuration = Duration.ZERO;
         private boolean suppressed = false;
         private long lastAlertTime = 0;
         private int alertCount = 0;
 
-        public GuardState(String alertType, Duration windowTime, int windowSlotSize) {
+        public GuardState(String alertType, Window eventWindow) {
             this.alertType = alertType;
-            this.eventWindow = new Window(windowTime, windowSlotSize);
+            this.eventWindow = eventWindow;
         }
 
         public void startSuppression(long timestamp, Duration duration) {
@@ -48,19 +66,66 @@ class RateGuard {
     }
 
 
-    public RateGuard(GuardConfig config, String timezone) {
-        this.timezone = timezone;
+    public RateGuard(GuardConfig config, TimestampFormatter timestamps, GroupKeyStrategy groupKeys) {
+        this(config, timestamps, groupKeys, new LocalGuardStateStore(), Duration.ZERO);
+    }
+
+    /**
+     * @param store send leases shared with the other nodes; windows and suppression stay per node
+     */
+    public RateGuard(GuardConfig config, TimestampFormatter timestamps, GroupKeyStrategy groupKeys,
+                     GuardStateStore store, Duration lease) {
+        this.store = store;
+        this.leaseMillis = lease.toMillis();
+        this.timestamps = timestamps;
+        this.groupKeys = groupKeys;
         this.guardStages = config.getStages();
         this.windowTime = config.getWindow();
-        this.windowSlotSize = this.guardStages.stream()
+        this.windowType = config.getWindowType();
+        this.windowBuckets = config.getWindowBuckets();
+        this.windowCapacity = this.guardStages.stream()
             .map(GuardStage::getCount)
             .reduce(Math::max)
             .orElse(0) + 1;
+        this.maxGroups = config.getMaxGroups();
+        this.idleMillis = windowTime.plus(this.guardStages.stream()
+            .map(GuardStage::getDuration)
+            .reduce((a, b) -> a.compareTo(b) >= 0 ? a : b)
+            .orElse(Duration.ZERO)).toMillis();
+        this.overflowState = new GuardState(OVERFLOW_LABEL, newWindow());
     }
 
-    public SendDecision shouldSendAlert(long timestamp, String alertType) {
-        GuardState state = alertStates.computeIfAbsent(alertType,
-            key -> new GuardState(alertType, windowTime, windowSlotSize));
+    /**
+     * Safe to call from any number of logging threads. Each group is updated under its own
+     * monitor, so unrelated groups never contend and counts stay exact within a group.
+     * Whatever passes suppression is sent only if this node holds the group's send lease.
+     */
+    public SendDecision shouldSendAlert(long timestamp, ILoggingEvent event) {
+        long fingerprint = groupKeys.fingerprint(event);
+        SendDecision decision = null;
+        while (decision == null) {
+            GuardState state = findState(fingerprint, event);
+            synchronized (state) {
+                // Lost a race with the sweeper: the group is gone, start a fresh one
+                if (!state.isEvicted()) {
+                    decision = decide(state, timestamp);
+                    decision.setLabel(state.getAlertType());
+                }
+            }
+        }
+        if (decision.isShouldSend() && !store.tryAcquire(fingerprint, timestamp, leaseMillis)) {
+            SendDecision deduplicated = new SendDecision(false, false, null);
+            deduplicated.setDeduplicated(true);
+            deduplicated.setLabel(decision.getLabel());
+            decision = deduplicated;
+        }
+        decision.setGroupKey(fingerprint);
+        return decision;
+    }
+
+    private SendDecision decide(GuardState state, long timestamp) {
+        String alertType = state.getAlertType();
+        state.setLastSeen(timestamp);
 
         state.getEventWindow().recordEvent(timestamp);
 
@@ -91,15 +156,81 @@ class RateGuard {
         return new SendDecision(true, false, null);
     }
 
+    /**
+     * Looks up the group of the event. Once {@code maxGroups} groups are live, new groups
+     * share a single overflow state until the sweeper reclaims idle ones, so memory stays
+     * bounded while storms of distinct keys are still guarded.
+     */
+    private GuardState findState(long fingerprint, ILoggingEvent event) {
+        GuardState state = alertStates.get(fingerprint);
+        if (state != null) {
+            return state;
+        }
+        if (alertStates.size() >= maxGroups) {
+            return overflowState;
+        }
+        return alertStates.computeIfAbsent(fingerprint,
+            key -> new GuardState(groupKeys.label(event), newWindow()));
+    }
+
+    /**
+     * Drops groups that have not seen an event within the window plus the longest
+     * suppression duration, and starts the shared overflow state over after the same idle time.
+     * Called from the appender's scheduler, never on append.
+     *
+     * @return the number of groups removed
+     */
+    int evictIdle(long now) {
+        AtomicInteger evicted = new AtomicInteger();
+        alertStates.forEach((key, state) -> {
+            if (now - state.getLastSeen() <= idleMillis) {
+                return;
+            }
+            synchronized (state) {
+                if (now - state.getLastSeen() > idleMillis && alertStates.remove(key, state)) {
+                    state.setEvicted(true);
+                    evicted.incrementAndGet();
+                }
+            }
+        });
+        evictedCount.addAndGet(evicted.get());
+        GuardState overflow = overflowState;
+        if (overflow.getLastSeen() != 0 && now - overflow.getLastSeen() > idleMillis) {
+            synchronized (overflow) {
+                if (now - overflow.getLastSeen() > idleMillis && !overflow.isEvicted()) {
+                    overflow.setEvicted(true);
+                    overflowState = new GuardState(OVERFLOW_LABEL, newWindow());
+                }
+            }
+        }
+        store.evictExpired(now);
+        return evicted.get();
+    }
+
+    int getGroupCount() {
+        return alertStates.size();
+    }
+
+    long getEvictedCount() {
+        return evictedCount.get();
+    }
+
     private GuardStage findSuppressionStage(int count) {
-        return guardStages.stream()
-            .filter(stage -> count >= stage.getCount())
-            .reduce((first, second) -> second)
-            .orElse(null);
+        GuardStage match = null;
+        for (GuardStage stage : guardStages) {
+            if (count >= stage.getCount()) {
+                match = stage;
+            }
+        }
+        return match;
+    }
+
+    private Window newWindow() {
+        return Window.create(windowType, windowTime, windowCapacity, windowBuckets);
     }
 
     private String generateSuppressionMessage(String alertType, GuardState state, int currentCount, GuardStage stage) {
-        Instant time =  Instant.ofEpochMilli(state.getSuppressionStartTime() + state.getSuppressionDuration().toMillis());
+        long time = state.getSuppressionStartTime() + state.getSuppressionDuration().toMillis();
 
         return String.format("""
             <b>Alert Detention Notice</b>
@@ -115,13 +246,13 @@ class RateGuard {
             alertType,
             currentCount,
             state.getSuppressionDuration().toMinutes(),
-            Utils.formatDateTime(time, timezone),
+            timestamps.format(time),
             stage.getLabel()
         );
     }
 
     private String generateEscalationMessage(String alertType, GuardState state, int currentCount, GuardStage stage) {
-        Instant time =  Instant.ofEpochMilli(state.getSuppressionStartTime() + state.getSuppressionDuration().toMillis());
+        long time = state.getSuppressionStartTime() + state.getSuppressionDuration().toMillis();
 
         return String.format("""
             <b>Alert Suppression Escalation</b>
@@ -137,7 +268,7 @@ class RateGuard {
             alertType,
             currentCount,
             state.getSuppressionDuration().toMinutes(),
-            Utils.formatDateTime(time, timezone),
+            timestamps.format(time),
             stage.getLabel()
         );
     }
@@ -0,0 +1,217 @@
+package io.github.haloka.telegram.logback;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Folds repeats of an alert group into the Telegram message already sent for it. RateGuard
+ * decides whether an event may alert; for one that may, the folder checks whether the same
+ * group went to the chat within {@code repeatEditWindow}. If so, the repeat only bumps that
+ * message's counter, and a debounced editMessageText rewrites its footer to
+ * "×N occurrences, last at HH:mm:ss", so one edit absorbs every repeat within the debounce delay.
+ *
+ * <p>A sender claims the fold when it sends an alert, before Telegram has returned the
+ * message_id, so repeats queued behind a slow send are folded too; they are counted and
+ * the edit goes out once the id is known. A failed send releases the claim, so the fold is
+ * only ever pending for the duration of one request, and the owner is the very message
+ * object the request was made for.
+ */
+class RepeatFolder {
+    /** Room kept for the footer within Telegram's text limit */
+    private static final int FOOTER_RESERVE = 80;
+
+    private final long windowMillis;
+    private final long debounceMillis;
+    private final int maxChars;
+    private final ScheduledExecutorService scheduler;
+    private final Consumer<TelegramMessage> edits;
+    private final DateTimeFormatter clock;
+    private final ConcurrentHashMap<Key, Fold> folds = new ConcurrentHashMap<>();
+
+    /**
+     * @param edits takes the editMessageText requests, normally the send queue
+     */
+    RepeatFolder(long windowMillis, long debounceMillis, int maxChars, String timezone,
+                 ScheduledExecutorService scheduler, Consumer<TelegramMessage> edits) {
+        this.windowMillis = windowMillis;
+        this.debounceMillis = debounceMillis;
+        this.maxChars = maxChars;
+        this.scheduler = scheduler;
+        this.edits = edits;
+        this.clock = DateTimeFormatter.ofPattern("HH:mm:ss").withZone(ZoneId.of(timezone));
+    }
+
+    /**
+     * Called on append.
+     *
+     * @return true if the event was folded into an earlier message and must not be sent
+     */
+    boolean fold(long groupKey, String chatId, long now) {
+        return fold(folds.get(new Key(groupKey, chatId)), null, now);
+    }
+
+    /**
+     * Called by a sender right before it sends an alert: folds it if an earlier alert of its group
+     * got there first, otherwise claims the group's fold for it.
+     *
+     * @return true if the alert was folded and must not be sent
+     */
+    boolean claim(TelegramMessage message, long now) {
+        Key key = new Key(message.getGroupKey(), message.getChatId());
+        while (true) {
+            Fold current = folds.get(key);
+            if (fold(current, message, now)) {
+                return true;
+            }
+            if (current != null && current.owner == message) {
+                return false;
+            }
+            Fold claimed = new Fold(key, message, now);
+            if (current == null ? folds.putIfAbsent(key, claimed) == null : folds.replace(key, current, claimed)) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Records the message_id of a delivered alert, sending the edit for repeats folded meanwhile.
+     */
+    void sent(TelegramMessage message, long messageId) {
+        Fold fold = folds.get(new Key(message.getGroupKey(), message.getChatId()));
+        if (fold == null || fold.owner != message) {
+            return;
+        }
+        if (message.getText().length() + FOOTER_RESERVE > maxChars) {
+            folds.remove(fold.key, fold);
+            return;
+        }
+        synchronized (fold) {
+            fold.messageId = messageId;
+            fold.text = message.getText();
+            fold.parseMode = message.getParseMode();
+            if (fold.occurrences > 1) {
+                scheduleEdit(fold);
+            }
+        }
+    }
+
+    /**
+     * Releases the fold of an alert that will not be delivered now, or of a message that can no
+     * longer be edited, e.g. because it was deleted.
+     */
+    void abandon(TelegramMessage message) {
+        Key key = new Key(message.getGroupKey(), message.getChatId());
+        Fold fold = folds.get(key);
+        if (fold != null && (fold.owner == message
+            || (message.getEditMessageId() != 0 && fold.messageId == message.getEditMessageId()))) {
+            folds.remove(key, fold);
+        }
+    }
+
+    /**
+     * Drops folds whose window has passed and whose last edit went out.
+     */
+    void evictExpired(long now) {
+        folds.values().removeIf(fold -> {
+            synchronized (fold) {
+                return now - fold.claimedAt >= windowMillis && !fold.editScheduled;
+            }
+        });
+    }
+
+    int size() {
+        return folds.size();
+    }
+
+    private boolean fold(Fold fold, TelegramMessage message, long now) {
+        if (fold == null || fold.owner == message) {
+            return false;
+        }
+        synchronized (fold) {
+            if (now - fold.claimedAt >= windowMillis) {
+                return false;
+            }
+            fold.occurrences++;
+            fold.lastAt = now;
+            if (fold.messageId != 0) {
+                scheduleEdit(fold);
+            }
+            return true;
+        }
+    }
+
+    /** Caller holds the fold's monitor */
+    private void scheduleEdit(Fold fold) {
+        if (!fold.editScheduled) {
+            fold.editScheduled = true;
+            scheduler.schedule(() -> flush(fold), debounceMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void flush(Fold fold) {
+        TelegramMessage edit;
+        synchronized (fold) {
+            fold.editScheduled = false;
+            String footer = "×" + fold.occurrences + " occurrences, last at " + clock.format(Instant.ofEpochMilli(fold.lastAt));
+            edit = new TelegramMessage(fold.key.chatId, fold.text + "\n\n"
+                + ("HTML".equals(fold.parseMode) ? "<i>" + footer + "</i>" : footer));
+            edit.setParseMode(fold.parseMode);
+            edit.setGroupKey(fold.key.groupKey);
+            edit.setEditMessageId(fold.messageId);
+            edit.setAlertCount(0);
+        }
+        edits.accept(edit);
+    }
+
+    private static final class Key {
+        private final long groupKey;
+        private final String chatId;
+
+        private Key(long groupKey, String chatId) {
+            this.groupKey = groupKey;
+            this.chatId = chatId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return groupKey == other.groupKey && chatId.equals(other.chatId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(groupKey, chatId);
+        }
+    }
+
+    private static final class Fold {
+        private final Key key;
+        /** Alert the fold was claimed for */
+        private final TelegramMessage owner;
+        private final long claimedAt;
+        /** 0 until Telegram returned the id of the owner's message */
+        private long messageId;
+        private String text;
+        private String parseMode;
+        /** Including the alert itself */
+        private int occurrences = 1;
+        private long lastAt;
+        private boolean editScheduled;
+
+        private Fold(Key key, TelegramMessage owner, long claimedAt) {
+            this.key = key;
+            this.owner = owner;
+            this.claimedAt = claimedAt;
+            this.lastAt = claimedAt;
+        }
+    }
+}
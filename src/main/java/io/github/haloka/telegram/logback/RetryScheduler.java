@@ -0,0 +1,205 @@
+package io.github.haloka.telegram.logback;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.haloka.telegram.logback.config.RetryConfig;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * Re-delivers failed messages without blocking sender threads. Failed messages wait on the
+ * appender's scheduler and are offered back to the queue when due: 429 responses honour
+ * Telegram's {@code parameters.retry_after} for the whole chat, 5xx and IO failures back
+ * off exponentially with jitter. Everything else is treated as permanent.
+ */
+class RetryScheduler {
+    private final int maxAttempts;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+    private final int maxPending;
+    private final ScheduledExecutorService scheduler;
+    private final Predicate<TelegramMessage> requeue;
+    private final Predicate<TelegramMessage> overflow;
+    private final ObjectMapper objectMapper;
+    private final AppenderMetrics metrics;
+
+    private final ConcurrentHashMap<String, Long> chatBlockedUntil = new ConcurrentHashMap<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    /** Messages parked on the scheduler, so they can be handed over when the appender stops */
+    private final ConcurrentHashMap<Long, TelegramMessage> parked = new ConcurrentHashMap<>();
+    private final AtomicLong parkSequence = new AtomicLong();
+    /** Messages that failed after {@link #close}, kept for {@link #drainPending} */
+    private final ConcurrentLinkedQueue<TelegramMessage> held = new ConcurrentLinkedQueue<>();
+    private volatile boolean closed;
+
+    /**
+     * @param requeue  offers a due message back to the send queue, false when it is full
+     * @param overflow takes retryable messages that ran out of attempts or room, false if they are lost
+     */
+    RetryScheduler(RetryConfig config, ScheduledExecutorService scheduler, Predicate<TelegramMessage> requeue,
+                   Predicate<TelegramMessage> overflow, ObjectMapper objectMapper, AppenderMetrics metrics) {
+        this.maxAttempts = config.getMaxAttempts();
+        this.initialBackoffMillis = config.getInitialBackoffAsJava().toMillis();
+        this.maxBackoffMillis = config.getMaxBackoffAsJava().toMillis();
+        this.maxPending = config.getMaxPending();
+        this.scheduler = scheduler;
+        this.requeue = requeue;
+        this.overflow = overflow;
+        this.objectMapper = objectMapper;
+        this.metrics = metrics;
+    }
+
+    /**
+     * @return true if the message will be attempted again, false if it was dropped
+     */
+    boolean onFailure(TelegramMessage message, Throwable error) {
+        HttpClient.RequestException failure = unwrap(error);
+        int status = failure != null ? failure.getStatusCode() : -1;
+
+        long delay;
+        if (status == 429) {
+            delay = retryAfterMillis(failure.getBody());
+            chatBlockedUntil.merge(message.getChatId(), System.currentTimeMillis() + delay, Math::max);
+        } else if (status >= 500 || isIoFailure(error)) {
+            delay = backoffMillis(message.getAttempts());
+        } else {
+            metrics.retryDropped();
+            return false;
+        }
+
+        message.setAttempts(message.getAttempts() + 1);
+        if (message.getAttempts() >= maxAttempts || !schedule(message, delay)) {
+            return giveUp(message);
+        }
+        metrics.retried();
+        return true;
+    }
+
+    /**
+     * Milliseconds until the chat may be sent to again after a 429, or 0.
+     */
+    long chatBackoff(String chatId, long now) {
+        Long until = chatBlockedUntil.get(chatId);
+        if (until == null) {
+            return 0;
+        }
+        if (until <= now) {
+            chatBlockedUntil.remove(chatId, until);
+            return 0;
+        }
+        return until - now;
+    }
+
+    private boolean giveUp(TelegramMessage message) {
+        if (overflow.test(message)) {
+            return true;
+        }
+        metrics.retryDropped();
+        return false;
+    }
+
+    private boolean schedule(TelegramMessage message, long delayMillis) {
+        if (closed) {
+            held.add(message);
+            return true;
+        }
+        if (pending.incrementAndGet() > maxPending) {
+            pending.decrementAndGet();
+            return false;
+        }
+        long id = parkSequence.incrementAndGet();
+        parked.put(id, message);
+        try {
+            scheduler.schedule(() -> {
+                if (parked.remove(id) == null) {
+                    return;
+                }
+                pending.decrementAndGet();
+                if (!requeue.test(message)) {
+                    giveUp(message);
+                }
+            }, delayMillis, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (Exception e) {
+            // Scheduler already shut down
+            parked.remove(id);
+            pending.decrementAndGet();
+            return false;
+        }
+    }
+
+    private long backoffMillis(int attempts) {
+        long backoff = Math.min(maxBackoffMillis, initialBackoffMillis << Math.min(attempts, 20));
+        long half = backoff / 2;
+        return half + ThreadLocalRandom.current().nextLong(half + 1);
+    }
+
+    private long retryAfterMillis(String body) {
+        long seconds = 0;
+        try {
+            if (body != null) {
+                JsonNode json = objectMapper.readTree(body);
+                seconds = json.path("parameters").path("retry_after").asLong(0);
+            }
+        } catch (Exception e) {
+            // Not a Telegram error body, fall back to backoff
+        }
+        return seconds > 0 ? TimeUnit.SECONDS.toMillis(seconds) : initialBackoffMillis;
+    }
+
+    private static HttpClient.RequestException unwrap(Throwable error) {
+        Throwable current = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        return current instanceof HttpClient.RequestException ? (HttpClient.RequestException) current : null;
+    }
+
+    private static boolean isIoFailure(Throwable error) {
+        for (Throwable current = error; current != null; current = current.getCause()) {
+            if (current instanceof IOException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Stops scheduling: messages that fail from now on are held for
+     * {@link #drainPending} instead of going back to a queue that is about to be drained.
+     */
+    void close() {
+        closed = true;
+    }
+
+    /**
+     * Takes every message still waiting for a retry, and those held since {@link #close}; their
+     * scheduled requeues become no-ops.
+     */
+    List<TelegramMessage> drainPending() {
+        List<TelegramMessage> drained = new ArrayList<>();
+        TelegramMessage late;
+        while ((late = held.poll()) != null) {
+            drained.add(late);
+        }
+        for (Long id : parked.keySet()) {
+            TelegramMessage message = parked.remove(id);
+            if (message != null) {
+                pending.decrementAndGet();
+                drained.add(message);
+            }
+        }
+        return drained;
+    }
+
+    int getPendingCount() {
+        return pending.get();
+    }
+}
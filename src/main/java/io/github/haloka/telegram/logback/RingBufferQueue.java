@@ -0,0 +1,330 @@
+package io.github.haloka.telegram.logback;
+
+import java.lang.invoke.VarHandle;
+import java.util.AbstractQueue;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded lock-free multi-producer multi-consumer queue over a preallocated ring (Vyukov's
+ * algorithm). Each slot carries a sequence number telling producers and consumers whose turn
+ * it is, so {@link #offer} is one CAS on the tail and allocates nothing. Empty consumers wait
+ * according to a {@link WaitStrategy}. Iteration is weakly consistent, like the concurrent
+ * collections', and does not support removal.
+ */
+class RingBufferQueue<E> extends AbstractQueue<E> implements BlockingQueue<E> {
+    private final int capacity;
+    private final int mask;
+    private final Object[] slots;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong head = new AtomicLong();
+    private final WaitStrategy waitStrategy;
+
+    /**
+     * @param capacity rounded up to a power of two
+     */
+    RingBufferQueue(int capacity, WaitStrategy waitStrategy) {
+        this.capacity = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1);
+        this.mask = this.capacity - 1;
+        this.slots = new Object[this.capacity];
+        this.sequences = new AtomicLongArray(this.capacity);
+        for (int i = 0; i < this.capacity; i++) {
+            sequences.set(i, i);
+        }
+        this.waitStrategy = waitStrategy;
+    }
+
+    @Override
+    public boolean offer(E element) {
+        if (element == null) {
+            throw new NullPointerException();
+        }
+        long position = tail.get();
+        while (true) {
+            int index = (int) position & mask;
+            long diff = sequences.getAcquire(index) - position;
+            if (diff == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    slots[index] = element;
+                    sequences.setRelease(index, position + 1);
+                    waitStrategy.signal();
+                    return true;
+                }
+                position = tail.get();
+            } else if (diff < 0) {
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E poll() {
+        long position = head.get();
+        while (true) {
+            int index = (int) position & mask;
+            long diff = sequences.getAcquire(index) - (position + 1);
+            if (diff == 0) {
+                if (head.compareAndSet(position, position + 1)) {
+                    E element = (E) slots[index];
+                    slots[index] = null;
+                    sequences.setRelease(index, position + capacity);
+                    return element;
+                }
+                position = head.get();
+            } else if (diff < 0) {
+                return null;
+            } else {
+                position = head.get();
+            }
+        }
+    }
+
+    @Override
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        E element = poll();
+        for (int attempt = 0; element == null; attempt++) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return null;
+            }
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            waitStrategy.await(this, attempt, remaining);
+            element = poll();
+        }
+        return element;
+    }
+
+    @Override
+    public E take() throws InterruptedException {
+        E element;
+        while ((element = poll(1, TimeUnit.SECONDS)) == null) {
+            // Keep waiting
+        }
+        return element;
+    }
+
+    /**
+     * Retries with short parks until the deadline; producers are never woken by consumers.
+     */
+    @Override
+    public boolean offer(E element, long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (!offer(element)) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return false;
+            }
+            LockSupport.parkNanos(Math.min(remaining, 50_000));
+        }
+        return true;
+    }
+
+    @Override
+    public void put(E element) throws InterruptedException {
+        while (!offer(element, 1, TimeUnit.SECONDS)) {
+            // Keep waiting
+        }
+    }
+
+    @Override
+    public E peek() {
+        while (true) {
+            long position = head.get();
+            long diff = sequences.getAcquire((int) position & mask) - (position + 1);
+            if (diff < 0) {
+                return null;
+            }
+            if (diff == 0) {
+                E element = published(position);
+                if (element != null) {
+                    return element;
+                }
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        long size = tail.get() - head.get();
+        return (int) Math.max(0, Math.min(capacity, size));
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return capacity - size();
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> target) {
+        return drainTo(target, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> target, int maxElements) {
+        int drained = 0;
+        E element;
+        while (drained < maxElements && (element = poll()) != null) {
+            target.add(element);
+            drained++;
+        }
+        return drained;
+    }
+
+    /**
+     * Walks the positions from head to tail, both re-read as it goes. Elements taken or not yet
+     * published when their slot is reached are skipped.
+     */
+    @Override
+    public Iterator<E> iterator() {
+        return new Iterator<E>() {
+            private long position = head.get();
+            private E next;
+
+            @Override
+            public boolean hasNext() {
+                while (next == null) {
+                    position = Math.max(position, head.get());
+                    if (position >= tail.get()) {
+                        return false;
+                    }
+                    next = published(position++);
+                }
+                return true;
+            }
+
+            @Override
+            public E next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                E element = next;
+                next = null;
+                return element;
+            }
+        };
+    }
+
+    /**
+     * The element at the position, or null unless it is published and not yet taken. The
+     * sequence is checked again after the read, so a consumer or a producer that reused the slot
+     * in between cannot hand back a wrong element.
+     */
+    @SuppressWarnings("unchecked")
+    private E published(long position) {
+        int index = (int) position & mask;
+        if (sequences.getAcquire(index) != position + 1) {
+            return null;
+        }
+        E element = (E) slots[index];
+        VarHandle.acquireFence();
+        return sequences.get(index) == position + 1 ? element : null;
+    }
+
+    /**
+     * How consumers wait on an empty queue.
+     */
+    interface WaitStrategy {
+        /**
+         * Waits a little for the next element.
+         *
+         * @param attempt   number of waits since the consumer found the queue empty
+         * @param remaining nanoseconds left of the caller's timeout
+         */
+        void await(RingBufferQueue<?> queue, int attempt, long remaining) throws InterruptedException;
+
+        /** Called by producers after publishing an element */
+        default void signal() {
+        }
+
+        static WaitStrategy of(String type) {
+            if ("yielding".equalsIgnoreCase(type)) {
+                return new Yielding();
+            }
+            if ("sleeping".equalsIgnoreCase(type)) {
+                return new Sleeping();
+            }
+            return new Blocking();
+        }
+    }
+
+    /**
+     * Parks idle consumers and has each producer unpark one of them, so a producer never takes a
+     * lock: with nobody waiting it pays a fence and a read of the empty waiter list.
+     */
+    static final class Blocking implements WaitStrategy {
+        private final ConcurrentLinkedQueue<Thread> waiters = new ConcurrentLinkedQueue<>();
+
+        @Override
+        public void await(RingBufferQueue<?> queue, int attempt, long remaining) {
+            Thread current = Thread.currentThread();
+            waiters.add(current);
+            try {
+                // Orders the registration before the size check, pairing with the fence in signal:
+                // either the producer finds this waiter or this consumer finds its element
+                VarHandle.fullFence();
+                if (queue.size() == 0) {
+                    LockSupport.parkNanos(queue, remaining);
+                }
+            } finally {
+                waiters.remove(current);
+            }
+        }
+
+        @Override
+        public void signal() {
+            // Orders the publish before the read of waiters
+            VarHandle.fullFence();
+            Thread waiter = waiters.poll();
+            if (waiter != null) {
+                LockSupport.unpark(waiter);
+            }
+        }
+    }
+
+    /**
+     * Spins, then yields, then parks for 100µs at a time; producers never pay for a wake-up.
+     */
+    static final class Sleeping implements WaitStrategy {
+        @Override
+        public void await(RingBufferQueue<?> queue, int attempt, long remaining) {
+            if (attempt < 100) {
+                Thread.onSpinWait();
+            } else if (attempt < 200) {
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(Math.min(remaining, 100_000));
+            }
+        }
+    }
+
+    /**
+     * Spins briefly, then yields the CPU on every retry. Lowest latency, burns a core while idle.
+     */
+    static final class Yielding implements WaitStrategy {
+        @Override
+        public void await(RingBufferQueue<?> queue, int attempt, long remaining) {
+            if (attempt < 100) {
+                Thread.onSpinWait();
+            } else {
+                Thread.yield();
+            }
+        }
+    }
+}
@@ -7,4 +7,10 @@ class SendDecision {
     private final boolean shouldSend;
     private final boolean isSuppressionNotification;
     private final String suppressionMessage;
+    /** Fingerprint of the group the event belongs to */
+    private long groupKey;
+    /** Label of the group, as shown in notices */
+    private String label;
+    /** Passed suppression, but another node holds the group's send lease */
+    private boolean deduplicated;
 }
\ No newline at end of file
@@ -0,0 +1,57 @@
+package io.github.haloka.telegram.logback;
+
+import io.github.haloka.telegram.logback.config.RateConfig;
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Paces outgoing requests to Telegram's server-side limits: a per-chat rate, a stricter
+ * per-minute rate for groups and channels (negative chat ids) and a global rate for the
+ * bot. Each limit is smooth (no bursts), so batched alerts go out evenly instead of
+ * tripping 429s. A message that has to wait reserves its slot in every limit, so waiting
+ * messages go out one slot apart in the order they were throttled.
+ */
+class SendThrottle {
+    private final int chatPerSecond;
+    private final int groupPerMinute;
+    private final GcraLimiter global;
+    private final ConcurrentHashMap<String, ChatLimits> chats = new ConcurrentHashMap<>();
+
+    private static final class ChatLimits {
+        private final GcraLimiter chat;
+        private final GcraLimiter group;
+
+        private ChatLimits(GcraLimiter chat, GcraLimiter group) {
+            this.chat = chat;
+            this.group = group;
+        }
+    }
+
+    SendThrottle(RateConfig config) {
+        this.chatPerSecond = config.getChatPerSecond();
+        this.groupPerMinute = config.getGroupPerMinute();
+        this.global = config.getGlobalPerSecond() > 0
+            ? new GcraLimiter(config.getGlobalPerSecond(), Duration.ofSeconds(1), 1) : null;
+    }
+
+    /**
+     * Reserves the next slot of every limit that applies to the chat.
+     *
+     * @return 0 when the message may be sent now, otherwise nanos until all its slots are due
+     */
+    long reserve(String chatId, long now) {
+        ChatLimits limits = chats.computeIfAbsent(chatId, this::newLimits);
+        return Math.max(reserve(limits.chat, now), Math.max(reserve(limits.group, now), reserve(global, now)));
+    }
+
+    private ChatLimits newLimits(String chatId) {
+        GcraLimiter chat = chatPerSecond > 0 ? new GcraLimiter(chatPerSecond, Duration.ofSeconds(1), 1) : null;
+        GcraLimiter group = groupPerMinute > 0 && chatId.startsWith("-")
+            ? new GcraLimiter(groupPerMinute, Duration.ofMinutes(1), 1) : null;
+        return new ChatLimits(chat, group);
+    }
+
+    private static long reserve(GcraLimiter limiter, long now) {
+        return limiter == null ? 0 : limiter.reserve(now);
+    }
+}
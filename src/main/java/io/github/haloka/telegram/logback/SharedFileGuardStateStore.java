@@ -0,0 +1,180 @@
+package io.github.haloka.telegram.logback;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Send leases shared by the processes of one host through a memory-mapped file. The file is an
+ * open-addressing table of 64-bit words updated with compare-and-set, so a lookup touches a few
+ * cache lines of shared memory and never takes a lock.
+ *
+ * <p>Word layout: {@code tag:24, node:16, expiry:24}. The tag is taken from the group
+ * fingerprint bits not used for the slot index, the node identifies the holder, and the expiry
+ * is in seconds since the epoch stored in the file header, modulo 2^24. Keeping tag and lease in
+ * one word lets an expired slot be taken over by another group atomically. A word counts as live
+ * only while its expiry lies within one lease of now, so a word left behind by a dead process
+ * cannot come back to life when the seconds wrap around; the sweeper also replaces expired words
+ * with a tombstone, which probes pass over like an occupied slot and claims reuse like a free
+ * one. Every process sharing the file must use the same lease. Groups whose probe sequence is
+ * full are always granted.
+ *
+ * <p>File layout: {@code magic:long, epochSeconds:long, slots:long}, padded to 64 bytes, then
+ * {@code slots} words.
+ */
+class SharedFileGuardStateStore implements GuardStateStore {
+    private static final long MAGIC = 0x54474753544f5245L;
+    private static final int HEADER_SIZE = 64;
+    private static final int EPOCH = 8;
+    private static final int SLOTS = 16;
+    private static final int MAX_PROBES = 16;
+    private static final int EXPIRY_BITS = 24;
+    private static final long EXPIRY_MASK = (1L << EXPIRY_BITS) - 1;
+    /** Tag 0 is never used by a group, so this word matches none */
+    private static final long TOMBSTONE = 1;
+    private static final VarHandle WORDS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int mask;
+    private final long epochSeconds;
+    private final long node;
+    private final long leaseSeconds;
+
+    /**
+     * @param slots table size, rounded up to a power of two; ignored if the file already exists
+     * @param leaseMillis lease used by every process sharing the file
+     */
+    SharedFileGuardStateStore(Path file, int slots, long leaseMillis) throws IOException {
+        this.leaseSeconds = seconds(leaseMillis);
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            // Keeps other processes opening the file from setting up the table at the same time
+            FileLock lock = channel.lock();
+            try {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.nativeOrder());
+                if (channel.size() >= HEADER_SIZE) {
+                    channel.read(header, 0);
+                }
+                if (header.getLong(0) != MAGIC) {
+                    int size = Integer.highestOneBit(Math.max(MAX_PROBES, slots - 1) << 1);
+                    header.clear();
+                    header.putLong(0, MAGIC);
+                    header.putLong(EPOCH, System.currentTimeMillis() / 1000);
+                    header.putLong(SLOTS, size);
+                    channel.truncate(0);
+                    channel.write(header, 0);
+                    channel.write(ByteBuffer.allocate(8), HEADER_SIZE + (long) size * 8 - 8);
+                    channel.force(true);
+                }
+                epochSeconds = header.getLong(EPOCH);
+                int size = (int) header.getLong(SLOTS);
+                mask = size - 1;
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) size * 8);
+            } finally {
+                lock.release();
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        // Two processes of the host sharing an id would both send, which is the safe failure
+        node = ThreadLocalRandom.current().nextLong(1, 1 << 16);
+    }
+
+    @Override
+    public boolean tryAcquire(long groupKey, long now, long leaseMillis) {
+        long hash = groupKey * 0x9E3779B97F4A7C15L;
+        long tag = hash >>> 40 == 0 ? 1 : hash >>> 40;
+        long seconds = (now / 1000 - epochSeconds) & EXPIRY_MASK;
+        long lease = seconds(leaseMillis);
+        long claimed = tag << 40 | node << EXPIRY_BITS | ((seconds + lease) & EXPIRY_MASK);
+        int home = (int) hash & mask;
+
+        retry:
+        while (true) {
+            int reusable = -1;
+            long reusableWord = 0;
+            for (int probe = 0; probe < MAX_PROBES; probe++) {
+                int slot = (home + probe) & mask;
+                long word = (long) WORDS.getVolatile(buffer, offset(slot));
+                if (word == 0) {
+                    if (reusable < 0) {
+                        reusable = slot;
+                    }
+                    break;
+                }
+                boolean live = word != TOMBSTONE && isLive(word, seconds, lease);
+                if (word >>> 40 == tag) {
+                    if (live && (word >>> EXPIRY_BITS & 0xFFFF) != node) {
+                        return false;
+                    }
+                    if (WORDS.compareAndSet(buffer, offset(slot), word, claimed)) {
+                        return true;
+                    }
+                    continue retry;
+                }
+                if (!live && reusable < 0) {
+                    reusable = slot;
+                    reusableWord = word;
+                }
+            }
+            if (reusable < 0 || WORDS.compareAndSet(buffer, offset(reusable), reusableWord, claimed)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Replaces expired words with tombstones before their seconds can wrap around.
+     */
+    @Override
+    public void evictExpired(long now) {
+        long seconds = (now / 1000 - epochSeconds) & EXPIRY_MASK;
+        for (int slot = 0; slot <= mask; slot++) {
+            long word = (long) WORDS.getVolatile(buffer, offset(slot));
+            if (word != 0 && word != TOMBSTONE && !isLive(word, seconds, leaseSeconds)) {
+                // A failed exchange means the slot was just claimed, which is fine to keep
+                WORDS.compareAndSet(buffer, offset(slot), word, TOMBSTONE);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // Nothing left to release
+        }
+    }
+
+    /**
+     * Live if the word expires after now but no later than a fresh lease would, modulo 2^24, so
+     * a stale expiry that wrapped around to look like the future still counts as expired.
+     */
+    private static boolean isLive(long word, long seconds, long lease) {
+        long remaining = (word - seconds) & EXPIRY_MASK;
+        return remaining > 0 && remaining <= lease;
+    }
+
+    private static long seconds(long millis) {
+        return Math.max(1, (millis + 999) / 1000);
+    }
+
+    private static int offset(int slot) {
+        return HEADER_SIZE + slot * 8;
+    }
+}
@@ -0,0 +1,136 @@
+package io.github.haloka.telegram.logback;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.IThrowableProxy;
+import ch.qos.logback.classic.spi.StackTraceElementProxy;
+import ch.qos.logback.classic.spi.ThrowableProxy;
+import java.lang.ref.WeakReference;
+
+/**
+ * Groups events by exception type and the top application frames that threw it, so the
+ * same exception from different call sites gets different groups. Digits, UUIDs and hex
+ * values are normalized out of the messages, so embedded ids do not split a group.
+ * Events without a throwable are grouped by their normalized message.
+ */
+class StackGroupKeys implements GroupKeyStrategy {
+    private static final int CACHE_SIZE = 512;
+
+    private final int stackDepth;
+    private final PackageFilter packages;
+    private final CachedFingerprint[] cache = new CachedFingerprint[CACHE_SIZE];
+
+    /**
+     * Entries are immutable and replaced whole, so racing writers can only cause a miss. Only
+     * the throwable's part of the hash is cached: one exception may be logged several times
+     * with different messages, e.g. again by an outer layer.
+     */
+    private static final class CachedFingerprint {
+        private final WeakReference<Object> throwable;
+        private final long throwableHash;
+
+        private CachedFingerprint(Object throwable, long throwableHash) {
+            this.throwable = new WeakReference<>(throwable);
+            this.throwableHash = throwableHash;
+        }
+    }
+
+    StackGroupKeys(int stackDepth) {
+        this(stackDepth, PackageFilter.DEFAULT);
+    }
+
+    /**
+     * @param packages decides which frames are application frames
+     */
+    StackGroupKeys(int stackDepth, PackageFilter packages) {
+        this.stackDepth = stackDepth;
+        this.packages = packages;
+    }
+
+    @Override
+    public long fingerprint(ILoggingEvent event) {
+        IThrowableProxy throwable = event.getThrowableProxy();
+        if (throwable == null) {
+            long hash = Fingerprint.mixNormalized(Fingerprint.SEED, event.getMessage(), Utils.GROUP_MESSAGE_LENGTH);
+            return Fingerprint.finish(hash);
+        }
+
+        Object identity = identityOf(throwable);
+        int slot = (System.identityHashCode(identity) & 0x7fffffff) % CACHE_SIZE;
+        CachedFingerprint cached = cache[slot];
+        long hash;
+        if (cached != null && cached.throwable.get() == identity) {
+            hash = cached.throwableHash;
+        } else {
+            hash = Fingerprint.mix(Fingerprint.SEED, throwable.getClassName(), Integer.MAX_VALUE);
+            hash = Fingerprint.mixNormalized(hash, throwable.getMessage(), Utils.GROUP_THROWABLE_LENGTH);
+            hash = mixFrames(hash, throwable.getStackTraceElementProxyArray());
+            cache[slot] = new CachedFingerprint(identity, hash);
+        }
+        hash = Fingerprint.mixNormalized(hash, event.getMessage(), Utils.GROUP_MESSAGE_LENGTH);
+        return Fingerprint.finish(hash);
+    }
+
+    @Override
+    public String label(ILoggingEvent event) {
+        IThrowableProxy throwable = event.getThrowableProxy();
+        String message = Utils.normalize(event.getMessage(), Utils.GROUP_MESSAGE_LENGTH);
+        if (throwable == null) {
+            return message;
+        }
+
+        StringBuilder label = new StringBuilder(throwable.getClassName());
+        StackTraceElementProxy[] stack = throwable.getStackTraceElementProxyArray();
+        int top = firstFrame(stack);
+        if (top >= 0) {
+            StackTraceElement frame = stack[top].getStackTraceElement();
+            label.append(" at ").append(frame.getClassName()).append('.').append(frame.getMethodName());
+        }
+        return label.append(':').append(message).toString();
+    }
+
+    private long mixFrames(long hash, StackTraceElementProxy[] stack) {
+        int first = firstFrame(stack);
+        if (first < 0) {
+            return hash;
+        }
+        boolean applicationOnly = isRelevant(stack[first]);
+        int mixed = 0;
+        for (int i = first; i < stack.length && mixed < stackDepth; i++) {
+            if (applicationOnly && !isRelevant(stack[i])) {
+                continue;
+            }
+            StackTraceElement frame = stack[i].getStackTraceElement();
+            hash = Fingerprint.mix(hash, frame.getClassName(), Integer.MAX_VALUE);
+            hash = Fingerprint.mix(hash, frame.getMethodName(), Integer.MAX_VALUE);
+            mixed++;
+        }
+        return hash;
+    }
+
+    /**
+     * Index of the first application frame, or of the top frame when the whole stack is
+     * framework code; -1 for an empty stack.
+     */
+    private int firstFrame(StackTraceElementProxy[] stack) {
+        if (stack == null || stack.length == 0) {
+            return -1;
+        }
+        for (int i = 0; i < stack.length; i++) {
+            if (isRelevant(stack[i])) {
+                return i;
+            }
+        }
+        return 0;
+    }
+
+    private boolean isRelevant(StackTraceElementProxy frame) {
+        return packages.isRelevant(frame.getStackTraceElement().getClassName());
+    }
+
+    private static Object identityOf(IThrowableProxy throwable) {
+        if (throwable instanceof ThrowableProxy) {
+            return ((ThrowableProxy) throwable).getThrowable();
+        }
+        return throwable;
+    }
+}
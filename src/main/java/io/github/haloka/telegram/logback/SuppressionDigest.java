@@ -0,0 +1,353 @@
+package io.github.haloka.telegram.logback;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Counts the alerts that were suppressed or rate limited, so a periodic digest can tell each chat
+ * what it missed. Groups are tracked in Space-Saving sketches of {@code capacity} counters: a
+ * group without a counter takes over the smallest one and inherits its count as possible error,
+ * so memory stays fixed however many distinct groups a storm produces, while any group with more
+ * than total/capacity events is guaranteed to be among the counters.
+ *
+ * <p>The sketches are striped: each logging thread counts into the first free stripe starting
+ * from its own, so threads rarely meet on a lock and never wait unless every stripe is busy.
+ * The digest merges a chat's stripes, adding a stripe's smallest count to the count and error of
+ * every group it does not track, which keeps the same guarantee for the merged counts.
+ */
+class SuppressionDigest {
+    private final int capacity;
+    private final int topSize;
+    private final Stripe[] stripes;
+    private final List<String> chatIds;
+    private long since;
+
+    private static final class Stripe {
+        private final ReentrantLock lock = new ReentrantLock();
+        /** Read-only after construction; the sketches are guarded by the lock */
+        private final Map<String, Sketch> chats = new HashMap<>();
+    }
+
+    private static final class Counter {
+        private long key;
+        private String label;
+        private long count;
+        /** Count inherited from the evicted group, the most this one may be overestimated by */
+        private long error;
+        private int index;
+    }
+
+    /**
+     * @param chats every chat an event can be routed to
+     * @param capacity number of groups tracked at once per chat and stripe
+     * @param topSize number of groups listed in a digest
+     */
+    SuppressionDigest(List<String> chats, int capacity, int topSize, long now) {
+        this.capacity = capacity;
+        this.topSize = topSize;
+        this.chatIds = List.copyOf(chats);
+        int count = Integer.highestOneBit(Math.max(1, Math.min(16, Runtime.getRuntime().availableProcessors())) * 2 - 1);
+        this.stripes = new Stripe[count];
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new Stripe();
+            for (String chat : chatIds) {
+                stripes[i].chats.put(chat, new Sketch(capacity));
+            }
+        }
+        this.since = now;
+    }
+
+    /**
+     * Counts one event that did not produce a message.
+     *
+     * @param chats the chats the event was routed to
+     * @param rateLimited true if the rate limit dropped it, false if its group was suppressed
+     */
+    void record(long key, String label, List<String> chats, boolean rateLimited) {
+        Stripe stripe = lockStripe();
+        try {
+            for (int i = 0; i < chats.size(); i++) {
+                Sketch sketch = stripe.chats.get(chats.get(i));
+                if (sketch != null) {
+                    sketch.count(key, label, rateLimited);
+                }
+            }
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    /**
+     * Renders the digests of everything counted since the previous ones and starts over.
+     *
+     * @return the message for each chat that missed something
+     */
+    Map<String, String> drain(long now) {
+        long minutes = Math.max(1, (now - since + 30_000) / 60_000);
+        since = now;
+        Map<String, String> messages = new LinkedHashMap<>();
+        for (String chat : chatIds) {
+            String message = render(merge(chat), minutes);
+            if (message != null) {
+                messages.put(chat, message);
+            }
+        }
+        return messages;
+    }
+
+    private Stripe lockStripe() {
+        int mask = stripes.length - 1;
+        int home = (int) Thread.currentThread().getId();
+        for (int i = 0; i < stripes.length; i++) {
+            Stripe stripe = stripes[(home + i) & mask];
+            if (stripe.lock.tryLock()) {
+                return stripe;
+            }
+        }
+        Stripe stripe = stripes[home & mask];
+        stripe.lock.lock();
+        return stripe;
+    }
+
+    /**
+     * Takes the chat's counts out of every stripe and adds them up.
+     */
+    private Merged merge(String chat) {
+        Merged merged = new Merged();
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                Sketch sketch = stripe.chats.get(chat);
+                merged.add(sketch);
+                sketch.reset();
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * @return the message, or null if nothing was missed
+     */
+    private String render(Merged merged, long minutes) {
+        long total = merged.suppressed + merged.rateLimited;
+        if (total == 0) {
+            return null;
+        }
+        List<long[]> top = new ArrayList<>(merged.counts.values());
+        top.sort(Comparator.comparingLong((long[] counter) -> counter[0]).reversed());
+
+        // Only groups certain to be above total/capacity are named; the tail of a sketch is noise.
+        // Groups beyond maxGroups share one label, show them as one line
+        Map<String, long[]> lines = new LinkedHashMap<>();
+        long listed = 0;
+        for (long[] counter : top) {
+            long key = counter[2];
+            String label = merged.labels.get(key);
+            if (counter[0] - counter[1] <= total / capacity
+                || (lines.size() >= topSize && !lines.containsKey(label))) {
+                continue;
+            }
+            long[] line = lines.computeIfAbsent(label, ignored -> new long[2]);
+            line[0] += counter[0];
+            line[1] += counter[1];
+            listed += counter[0] - counter[1];
+        }
+
+        List<String> entries = new ArrayList<>(lines.size() + 1);
+        lines.forEach((label, line) -> entries.add("• " + (line[1] > 0 ? "≤" : "") + line[0] + "× "
+            + Utils.htmlEscape(label.length() > 200 ? label.substring(0, 200) + "..." : label)));
+        if (listed < total) {
+            entries.add("• " + (lines.isEmpty() ? "" : "≤") + (total - listed) + "× other groups");
+        }
+
+        return String.format("""
+            <b>Suppressed Alerts Digest</b>
+
+            %d alerts were not sent in the last %d minutes (%d suppressed, %d rate limited). Top groups:
+            %s
+            """,
+            total,
+            minutes,
+            merged.suppressed,
+            merged.rateLimited,
+            String.join("\n", entries)
+        );
+    }
+
+    /**
+     * One chat's counts over all stripes: {@code count, error, key} per group.
+     */
+    private static final class Merged {
+        private final Map<Long, long[]> counts = new HashMap<>();
+        private final Map<Long, String> labels = new HashMap<>();
+        /** Sum of the floors of the stripes added so far, owed to groups they did not track */
+        private long floors;
+        private long suppressed;
+        private long rateLimited;
+
+        private void add(Sketch sketch) {
+            suppressed += sketch.suppressed;
+            rateLimited += sketch.rateLimited;
+            long floor = sketch.floor();
+            for (int i = 0; i < sketch.size; i++) {
+                Counter counter = sketch.heap[i];
+                long[] merged = counts.get(counter.key);
+                if (merged == null) {
+                    merged = new long[] {floors, floors, counter.key};
+                    counts.put(counter.key, merged);
+                    labels.put(counter.key, counter.label);
+                }
+                // Groups this stripe does not track get its floor below, so take it back here
+                merged[0] += counter.count - floor;
+                merged[1] += counter.error - floor;
+            }
+            for (long[] merged : counts.values()) {
+                merged[0] += floor;
+                merged[1] += floor;
+            }
+            floors += floor;
+        }
+    }
+
+    /**
+     * A Space-Saving sketch: counters in a min-heap on count, found by key through an
+     * open-addressing table of their own, so counting takes no allocation.
+     */
+    private static final class Sketch {
+        private final Counter[] heap;
+        private final Counter[] table;
+        private final int mask;
+        private int size;
+        private long suppressed;
+        private long rateLimited;
+
+        private Sketch(int capacity) {
+            this.heap = new Counter[capacity];
+            this.table = new Counter[Integer.highestOneBit(capacity * 2 - 1) * 2];
+            this.mask = table.length - 1;
+        }
+
+        private void count(long key, String label, boolean rateLimited) {
+            if (rateLimited) {
+                this.rateLimited++;
+            } else {
+                suppressed++;
+            }
+            Counter counter = find(key);
+            if (counter == null) {
+                if (size < heap.length) {
+                    counter = new Counter();
+                    heap[size] = counter;
+                    siftUp(size++);
+                } else {
+                    counter = heap[0];
+                    remove(counter.key);
+                    counter.error = counter.count;
+                }
+                counter.key = key;
+                counter.label = label;
+                insert(counter);
+            }
+            counter.count++;
+            siftDown(counter.index);
+        }
+
+        /** Most a group without a counter may have been counted, 0 until every counter is taken */
+        private long floor() {
+            return size < heap.length ? 0 : heap[0].count;
+        }
+
+        private void reset() {
+            Arrays.fill(heap, 0, size, null);
+            Arrays.fill(table, null);
+            size = 0;
+            suppressed = 0;
+            rateLimited = 0;
+        }
+
+        private Counter find(long key) {
+            for (int slot = home(key); ; slot = (slot + 1) & mask) {
+                Counter counter = table[slot];
+                if (counter == null || counter.key == key) {
+                    return counter;
+                }
+            }
+        }
+
+        private void insert(Counter counter) {
+            int slot = home(counter.key);
+            while (table[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = counter;
+        }
+
+        /** Backward-shift deletion, so probes never need tombstones */
+        private void remove(long key) {
+            int slot = home(key);
+            while (table[slot].key != key) {
+                slot = (slot + 1) & mask;
+            }
+            int hole = slot;
+            for (int next = (hole + 1) & mask; table[next] != null; next = (next + 1) & mask) {
+                int wanted = home(table[next].key);
+                // Move the entry back unless its home lies cyclically after the hole
+                if (((next - wanted) & mask) >= ((next - hole) & mask)) {
+                    table[hole] = table[next];
+                    hole = next;
+                }
+            }
+            table[hole] = null;
+        }
+
+        private int home(long key) {
+            return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+        }
+
+        /** Moves a new, zero count counter to its place */
+        private void siftUp(int index) {
+            Counter counter = heap[index];
+            while (index > 0) {
+                int parent = (index - 1) / 2;
+                if (heap[parent].count <= counter.count) {
+                    break;
+                }
+                heap[index] = heap[parent];
+                heap[index].index = index;
+                index = parent;
+            }
+            heap[index] = counter;
+            counter.index = index;
+        }
+
+        /** Restores the heap after the counter at index grew */
+        private void siftDown(int index) {
+            Counter counter = heap[index];
+            while (true) {
+                int child = 2 * index + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && heap[child + 1].count < heap[child].count) {
+                    child++;
+                }
+                if (heap[child].count >= counter.count) {
+                    break;
+                }
+                heap[index] = heap[child];
+                heap[index].index = index;
+                index = child;
+            }
+            heap[index] = counter;
+            counter.index = index;
+        }
+    }
+}
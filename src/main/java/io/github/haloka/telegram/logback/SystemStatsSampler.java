@@ -0,0 +1,156 @@
+package io.github.haloka.telegram.logback;
+
+import com.sun.management.OperatingSystemMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.RuntimeMXBean;
+import java.lang.management.ThreadMXBean;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Renders the "Detailed Statistics" block of an alert from the JVM MXBeans. With a
+ * positive interval the block is refreshed in the background and alerts embed the latest
+ * snapshot; sampling stops by itself once no alert has asked for it for a while and
+ * restarts with the next alert.
+ */
+class SystemStatsSampler {
+    private static final int IDLE_INTERVALS = 30;
+
+    private final long intervalMillis;
+    private final ScheduledExecutorService scheduler;
+    // Parts of the block that cannot change while the JVM runs
+    private final String osLine;
+    private final String jvmSuffix;
+    private final AtomicBoolean sampling = new AtomicBoolean(false);
+    private volatile Snapshot snapshot;
+    private volatile long lastRequested;
+
+    private static final class Snapshot {
+        private final String text;
+        private final long takenAt;
+
+        private Snapshot(String text, long takenAt) {
+            this.text = text;
+            this.takenAt = takenAt;
+        }
+    }
+
+    /**
+     * @param interval refresh interval, zero renders fresh statistics for every alert
+     */
+    SystemStatsSampler(TimestampFormatter timestamps, Duration interval, ScheduledExecutorService scheduler) {
+        this.intervalMillis = interval.toMillis();
+        this.scheduler = scheduler;
+
+        RuntimeMXBean runtimeBean = ManagementFactory.getRuntimeMXBean();
+        this.osLine = "Name: " + System.getProperty("os.name")
+            + ", OS Version: " + System.getProperty("os.version")
+            + " (" + System.getProperty("os.arch") + ")\n";
+        this.jvmSuffix = ", Started: " + timestamps.format(runtimeBean.getStartTime())
+            + ", Args: " + formatJVMArgs(runtimeBean.getInputArguments());
+    }
+
+    String get() {
+        if (intervalMillis <= 0) {
+            return render();
+        }
+
+        long now = System.currentTimeMillis();
+        lastRequested = now;
+        Snapshot current = snapshot;
+        if (current == null || now - current.takenAt > 2 * intervalMillis) {
+            current = refresh();
+        }
+        if (sampling.compareAndSet(false, true)) {
+            scheduleNext();
+        }
+        return current.text;
+    }
+
+    private void sample() {
+        if (System.currentTimeMillis() - lastRequested > IDLE_INTERVALS * intervalMillis) {
+            sampling.set(false);
+            return;
+        }
+        refresh();
+        scheduleNext();
+    }
+
+    private void scheduleNext() {
+        try {
+            scheduler.schedule(this::sample, intervalMillis, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            // Scheduler shut down with the appender; alerts fall back to synchronous refresh
+            sampling.set(false);
+        }
+    }
+
+    private Snapshot refresh() {
+        Snapshot fresh = new Snapshot(render(), System.currentTimeMillis());
+        snapshot = fresh;
+        return fresh;
+    }
+
+    private String render() {
+        StringBuilder sb = new StringBuilder(512);
+        MemoryMXBean memoryBean = ManagementFactory.getMemoryMXBean();
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        RuntimeMXBean runtimeBean = ManagementFactory.getRuntimeMXBean();
+
+        sb.append("\n\n<b>Detailed Statistics:</b>\n");
+
+        long heapUsed = memoryBean.getHeapMemoryUsage().getUsed() / (1024 * 1024);
+        long heapMax = memoryBean.getHeapMemoryUsage().getMax() / (1024 * 1024);
+        long nonHeapUsed = memoryBean.getNonHeapMemoryUsage().getUsed() / (1024 * 1024);
+
+        sb.append("<pre>");
+        sb.append(osLine);
+
+        sb.append("Memory Heap: ").append(heapUsed).append("MB/").append(heapMax).append("MB, ");
+        sb.append("Non-Heap: ").append(nonHeapUsed).append("MB, ");
+        sb.append("GC Count: ").append(getGCCount()).append("\n");
+
+        sb.append("Threads Active: ").append(threadBean.getThreadCount()).append(", ");
+        sb.append("Peak: ").append(threadBean.getPeakThreadCount()).append(", ");
+        sb.append("Daemon: ").append(threadBean.getDaemonThreadCount()).append("\n");
+        try {
+            OperatingSystemMXBean osBean = (OperatingSystemMXBean)ManagementFactory.getOperatingSystemMXBean();
+            sb.append("System Load: ").append(String.format("%.1f%%", osBean.getProcessCpuLoad() * 100)).append("\n");
+        } catch (Exception e) {
+            sb.append("System Load: N/A\n");
+        }
+
+        sb.append("Uptime: ").append(formatUptime(runtimeBean.getUptime()));
+        sb.append(jvmSuffix);
+        sb.append("</pre>");
+        return sb.toString();
+    }
+
+    private long getGCCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gcBean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            long gcCount = gcBean.getCollectionCount();
+            if (gcCount != -1) {
+                count += gcCount;
+            }
+        }
+        return count;
+    }
+
+    private String formatUptime(long uptime) {
+        long hours = uptime / (60 * 60 * 1000);
+        long minutes = (uptime % (60 * 60 * 1000)) / (60 * 1000);
+        long seconds = (uptime % (60 * 1000)) / 1000;
+        return String.format("%02d:%02d:%02d", hours, minutes, seconds);
+    }
+
+    private static String formatJVMArgs(List<String> args) {
+        if (args.isEmpty()) return "none";
+        return args.size() + " args";
+    }
+}
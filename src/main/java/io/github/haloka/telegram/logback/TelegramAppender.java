@@ -1,40 +1,83 @@
 package io.github.haloka.telegram.logback;
 
+import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.spi.ILoggingEvent;
-import ch.qos.logback.core.AppenderBase;
+import ch.qos.logback.core.UnsynchronizedAppenderBase;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.haloka.telegram.logback.config.BatchConfig;
+import io.github.haloka.telegram.logback.config.ChatRoute;
+import io.github.haloka.telegram.logback.config.ClusterConfig;
 import io.github.haloka.telegram.logback.config.HttpConfig;
+import io.github.haloka.telegram.logback.config.QueueConfig;
 import io.github.haloka.telegram.logback.config.RateConfig;
+import io.github.haloka.telegram.logback.config.RetryConfig;
+import io.github.haloka.telegram.logback.config.SpoolConfig;
 import io.github.haloka.telegram.logback.config.GuardConfig;
 import io.github.haloka.telegram.logback.config.GuardStage;
 import io.github.haloka.telegram.logback.config.ThreadConfig;
 
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
 import java.net.UnknownHostException;
 import java.text.MessageFormat;
+import java.time.Duration;
+import java.nio.file.Paths;
 import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicLong;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
 
-public class TelegramAppender extends AppenderBase<ILoggingEvent> {
+public class TelegramAppender extends UnsynchronizedAppenderBase<ILoggingEvent> {
 
     // Components
     ExecutorService executor;
+    /** Runs each send on its own virtual thread; null unless threadVirtual is in effect */
+    ExecutorService sendExecutor;
+    ScheduledExecutorService scheduler;
     BlockingQueue<TelegramMessage> queue;
     HttpClient httpClient;
     RateGuard rateGuard;
-    final AtomicInteger messageCount = new AtomicInteger(0);
-    final AtomicLong lastResetTime = new AtomicLong(System.currentTimeMillis());
+    GuardStateStore stateStore;
+    GcraLimiter rateLimiter;
+    SendThrottle sendThrottle;
     final AtomicBoolean rateLimitExceeded = new AtomicBoolean(false);
     AlertFormatter formatter;
+    MessageBatcher batcher;
+    Semaphore inFlight;
+    RetryScheduler retryScheduler;
+    ThrottleHold throttleHold;
+    DiskSpool spool;
+    PayloadEncoder payloadEncoder;
+    ChatRouter router;
+    /** Null unless repeatEdit is enabled */
+    RepeatFolder repeatFolder;
+    /** Null unless digestInterval is set */
+    SuppressionDigest digest;
+    /** sendMessage endpoint with the bot token filled in, resolved once at start */
+    URI sendUri;
+    URI editUri;
+    /** Set by stop(): senders flush what is left and exit once idle */
+    volatile boolean draining;
+    AppenderMetrics metrics;
+    ObjectName metricsName;
 
     // Host information
     String hostIp;
@@ -47,6 +90,14 @@ public class TelegramAppender extends AppenderBase<ILoggingEvent> {
     private String botToken;
     private String chatId;
     private String timezone = "Asia/Tokyo";
+    private String systemStatsInterval = "PT1S";
+    private String drainTimeout = "PT5S";
+    private boolean deferredFormatting = false;
+    private String stackIncludes;
+    private String stackExcludes = PackageFilter.DEFAULT_EXCLUDES;
+    private boolean jmxEnabled = true;
+    private MetricsListener metricsListener;
+    private GuardStateStore guardStateStore;
 
 
     public void setUrl(String url) {
@@ -64,12 +115,47 @@ public class TelegramAppender extends AppenderBase<ILoggingEvent> {
     public void setTimezone(String timezone) {
         this.timezone = timezone;
     }
+    public void setSystemStatsInterval(String systemStatsInterval) {
+        this.systemStatsInterval = systemStatsInterval;
+    }
+    public void setDrainTimeout(String drainTimeout) {
+        this.drainTimeout = drainTimeout;
+    }
+    public void setDeferredFormatting(boolean deferredFormatting) {
+        this.deferredFormatting = deferredFormatting;
+    }
+    public void setStackIncludes(String stackIncludes) {
+        this.stackIncludes = stackIncludes;
+    }
+    public void setStackExcludes(String stackExcludes) {
+        this.stackExcludes = stackExcludes;
+    }
+    public void setJmxEnabled(boolean jmxEnabled) {
+        this.jmxEnabled = jmxEnabled;
+    }
+    public void setMetricsListener(MetricsListener metricsListener) {
+        this.metricsListener = metricsListener;
+    }
+    public void setGuardStateStore(GuardStateStore guardStateStore) {
+        this.guardStateStore = guardStateStore;
+    }
 
     // Configurations
     private final GuardConfig guardConfig = new GuardConfig();
     private final HttpConfig httpConfig = new HttpConfig();
     private final ThreadConfig threadConfig = new ThreadConfig();
     private final RateConfig rateConfig = new RateConfig();
+    private final BatchConfig batchConfig = new BatchConfig();
+    private final RetryConfig retryConfig = new RetryConfig();
+    private final SpoolConfig spoolConfig = new SpoolConfig();
+    private final QueueConfig queueConfig = new QueueConfig();
+    private final ClusterConfig clusterConfig = new ClusterConfig();
+    private final List<ChatRoute> routes = new ArrayList<>();
+
+    // Routing config
+    public void addRoute(ChatRoute route) {
+        routes.add(route);
+    }
 
     // Suppression config
     public void addGuardStage(GuardStage stage) {
@@ -78,6 +164,59 @@ public class TelegramAppender extends AppenderBase<ILoggingEvent> {
     public void setWindowSize(String windowSize) {
         guardConfig.setWindowSize(windowSize);
     }
+    public void setWindowType(String windowType) {
+        guardConfig.setWindowType(windowType);
+    }
+    public void setWindowBuckets(int buckets) {
+        guardConfig.setWindowBuckets(buckets);
+    }
+    public void setGroupStrategy(String groupStrategy) {
+        guardConfig.setGroupStrategy(groupStrategy);
+    }
+    public void setGroupStackDepth(int depth) {
+        guardConfig.setGroupStackDepth(depth);
+    }
+    public void setMaxGroups(int maxGroups) {
+        guardConfig.setMaxGroups(maxGroups);
+    }
+    public void setRepeatEdit(boolean repeatEdit) {
+        guardConfig.setRepeatEdit(repeatEdit);
+    }
+    public void setRepeatEditWindow(String window) {
+        guardConfig.setRepeatEditWindow(window);
+    }
+    public void setRepeatEditDebounce(String debounce) {
+        guardConfig.setRepeatEditDebounce(debounce);
+    }
+    public void setDigestInterval(String interval) {
+        guardConfig.setDigestInterval(interval);
+    }
+    public void setDigestSize(int size) {
+        guardConfig.setDigestSize(size);
+    }
+    public void setDigestCapacity(int capacity) {
+        guardConfig.setDigestCapacity(capacity);
+    }
+
+    // Cluster config
+    public void setClusterStore(String store) {
+        clusterConfig.setStore(store);
+    }
+    public void setClusterLease(String lease) {
+        clusterConfig.setLease(lease);
+    }
+    public void setClusterFile(String file) {
+        clusterConfig.setFile(file);
+    }
+    public void setClusterFileSlots(int slots) {
+        clusterConfig.setFileSlots(slots);
+    }
+    public void setClusterGossipBind(String bind) {
+        clusterConfig.setGossipBind(bind);
+    }
+    public void setClusterGossipPeers(String peers) {
+        clusterConfig.setGossipPeers(peers);
+    }
 
 
     // HTTP config
@@ -90,6 +229,12 @@ public class TelegramAppender extends AppenderBase<ILoggingEvent> {
     public void setHttpFollowRedirects(boolean follow) {
         httpConfig.setFollowRedirects(follow);
     }
+    public void setHttpAsync(boolean async) {
+        httpConfig.setAsync(async);
+    }
+    public void setHttpMaxInFlight(int maxInFlight) {
+        httpConfig.setMaxInFlight(maxInFlight);
+    }
 
     // Thread pool config
     public void setThreadCorePoolSize(int size) {
@@ -104,6 +249,23 @@ public class TelegramAppender extends AppenderBase<ILoggingEvent> {
     public void setThreadKeepAliveTime(String time) {
         threadConfig.setKeepAliveTime(time);
     }
+    public void setThreadVirtual(boolean virtual) {
+        threadConfig.setVirtual(virtual);
+    }
+
+    // Queue config
+    public void setQueueType(String type) {
+        queueConfig.setType(type);
+    }
+    public void setQueueWaitStrategy(String waitStrategy) {
+        queueConfig.setWaitStrategy(waitStrategy);
+    }
+    public void setQueueOverflowPolicy(String overflowPolicy) {
+        queueConfig.setOverflowPolicy(overflowPolicy);
+    }
+    public void setQueueBlockTimeout(String timeout) {
+        queueConfig.setBlockTimeout(timeout);
+    }
 
     // Rate limit config
     public void setRateLimitMaxMessages(int max) {
@@ -112,8 +274,58 @@ public class TelegramAppender extends AppenderBase<ILoggingEvent> {
     public void setRateLimitWindow(String window) {
         rateConfig.setWindow(window);
     }
+    public void setRateLimitChatPerSecond(int rate) {
+        rateConfig.setChatPerSecond(rate);
+    }
+    public void setRateLimitGroupPerMinute(int rate) {
+        rateConfig.setGroupPerMinute(rate);
+    }
+    public void setRateLimitGlobalPerSecond(int rate) {
+        rateConfig.setGlobalPerSecond(rate);
+    }
+
+    // Batching config
+    public void setBatchMaxMessages(int max) {
+        batchConfig.setMaxMessages(max);
+    }
+    public void setBatchLinger(String linger) {
+        batchConfig.setLinger(linger);
+    }
+    public void setBatchMaxChars(int maxChars) {
+        batchConfig.setMaxChars(maxChars);
+    }
+
+    // Retry config
+    public void setRetryMaxAttempts(int attempts) {
+        retryConfig.setMaxAttempts(attempts);
+    }
+    public void setRetryInitialBackoff(String backoff) {
+        retryConfig.setInitialBackoff(backoff);
+    }
+    public void setRetryMaxBackoff(String backoff) {
+        retryConfig.setMaxBackoff(backoff);
+    }
+    public void setRetryMaxPending(int maxPending) {
+        retryConfig.setMaxPending(maxPending);
+    }
+
+    // Spool config
+    public void setSpoolDirectory(String directory) {
+        spoolConfig.setDirectory(directory);
+    }
+    public void setSpoolSegmentSize(int size) {
+        spoolConfig.setSegmentSize(size);
+    }
+    public void setSpoolMaxSegments(int maxSegments) {
+        spoolConfig.setMaxSegments(maxSegments);
+    }
+    public void setSpoolReplayInterval(String interval) {
+        spoolConfig.setReplayInterval(interval);
+    }
 
     // Dependencies
+    private static final int DRAIN_BATCH_SIZE = 50;
+    private static final Map<String, String> JSON_HEADERS = Map.of("Content-Type", "application/json");
     private ObjectMapper objectMapper = new ObjectMapper();
 
     public TelegramAppender() {
@@ -145,24 +357,80 @@ public class TelegramAppender extends AppenderBase<ILoggingEvent> {
             return;
         }
 
+        // Left set by a previous stop(), which would make the new senders exit once idle
+        draining = false;
         initializeComponents();
 
         super.start();
     }
 
+    /**
+     * Live self-metrics, also exported over JMX unless jmxEnabled is false. Null before start.
+     */
+    public TelegramAppenderMetricsMBean getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Stops taking alerts, lets the senders flush the queue and pending retries until drainTimeout,
+     * and hands whatever is left to the spool, or to stderr without one.
+     */
     @Override
     public void stop() {
+        if (!isStarted()) {
+            return;
+        }
+        super.stop();
+        unregisterMetrics();
+        long started = System.nanoTime();
+        long deadline = started + Duration.parse(drainTimeout).toNanos();
+        long sentBefore = metrics.getAlertsSent();
+        draining = true;
+
         if (executor != null) {
             executor.shutdown();
             try {
-                if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                if (!executor.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
                     executor.shutdownNow();
                 }
+                if (inFlight != null) {
+                    // Requests still open after the deadline get the time the senders did not use
+                    inFlight.tryAcquire(httpConfig.getMaxInFlight(), Math.max(0, deadline - System.nanoTime()),
+                        TimeUnit.NANOSECONDS);
+                }
+                if (sendExecutor != null) {
+                    sendExecutor.shutdownNow();
+                }
             } catch (InterruptedException e) {
                 executor.shutdownNow();
+                Thread.currentThread().interrupt();
             }
         }
-        super.stop();
+
+        // Nothing may put a message back once the queue and the retries are collected: failures
+        // and throttled messages are held from here on, and scheduled requeues, replays and edits are stopped
+        retryScheduler.close();
+        throttleHold.close();
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            try {
+                scheduler.awaitTermination(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        List<TelegramMessage> undelivered = new ArrayList<>();
+        queue.drainTo(undelivered);
+        undelivered.addAll(retryScheduler.drainPending());
+        undelivered.addAll(throttleHold.drainHeld());
+        if (stateStore != null) {
+            stateStore.close();
+        }
+        String fallback = handOverUndelivered(undelivered);
+
+        addInfo(String.format("Stopped after draining for %d ms: %d alerts delivered, %d messages undelivered%s",
+            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started), metrics.getAlertsSent() - sentBefore,
+            undelivered.size(), fallback));
     }
 
     @Override
@@ -170,58 +438,260 @@ public class TelegramAppender extends AppenderBase<ILoggingEvent> {
         try {
             long timestamp = System.currentTimeMillis();
 
-            String groupKey = Utils.generateGroupKey(event.getMessage(), event.getThrowableProxy());
-            SendDecision decision = rateGuard.shouldSendAlert(timestamp, groupKey);
+            metrics.eventSeen();
+            List<String> chats = router.route(event);
+            if (chats.isEmpty()) {
+                return;
+            }
+            SendDecision decision = rateGuard.shouldSendAlert(timestamp, event);
 
+            if (decision.isDeduplicated()) {
+                metrics.eventDeduplicated();
+                return;
+            }
             if (!decision.isShouldSend()) {
+                metrics.eventSuppressed();
+                if (digest != null) {
+                    digest.record(decision.getGroupKey(), decision.getLabel(), chats, false);
+                }
                 return;
             }
 
             if (decision.isSuppressionNotification()) {
-                queue.offer(new TelegramMessage(chatId, decision.getSuppressionMessage()));
+                metrics.suppressionNotice();
+                for (String chat : chats) {
+                    enqueue(new TelegramMessage(chat, decision.getSuppressionMessage()));
+                }
                 return;
             }
 
-            if (!checkRateLimit(timestamp)) {
-                if (!rateLimitExceeded.get()) {
-                    sendAlarmLimit();
+            // Folded repeats cost no message, so they do not take rate limit tokens either
+            if (repeatFolder != null) {
+                chats = unfolded(decision.getGroupKey(), chats, timestamp);
+                if (chats.isEmpty()) {
+                    return;
+                }
+            }
+
+            if (rateLimiter.tryAcquire(System.nanoTime()) > 0) {
+                metrics.eventRateLimited();
+                if (digest != null) {
+                    digest.record(decision.getGroupKey(), decision.getLabel(), chats, true);
+                }
+                if (rateLimitExceeded.compareAndSet(false, true)) {
+                    sendAlarmLimit(chats);
                 }
-                rateLimitExceeded.set(true);
                 return;
             }
             rateLimitExceeded.set(false);
 
-            String message = formatter.formatError(hostName, hostIp, appName, event);
-            queue.offer(new TelegramMessage(chatId, message));
+            // Rendered once and shared by every chat the alert fans out to
+            AlertEvent alert = AlertEvent.of(event);
+            String text = deferredFormatting ? null : format(alert);
+            for (String chat : chats) {
+                TelegramMessage message = text == null ? new TelegramMessage(chat, alert) : new TelegramMessage(chat, text);
+                message.setGroupKey(decision.getGroupKey());
+                enqueue(message);
+            }
         } catch (Exception e) {
             addError("Error sending message to Telegram", e);
         }
     }
 
-    private void sendAlarmLimit() {
-        queue.offer(new TelegramMessage(
-                chatId,
-                "🚨<b>ERROR REPORT:</b> Rate limit reached. Messages suspended until next minute. Please check logs for details."));
+    private boolean enqueue(TelegramMessage message) {
+        if (queue.offer(message) || offerOnOverflow(message)) {
+            metrics.enqueued();
+            return true;
+        }
+        if (spool(message)) {
+            return true;
+        }
+        metrics.droppedQueueFull();
+        return false;
+    }
+
+    /**
+     * Applies the queue overflow policy once a plain offer failed.
+     */
+    private boolean offerOnOverflow(TelegramMessage message) {
+        String policy = queueConfig.getOverflowPolicy();
+        if ("dropOldest".equalsIgnoreCase(policy)) {
+            TelegramMessage oldest = queue.poll();
+            if (oldest != null && !spool(oldest)) {
+                metrics.droppedQueueFull();
+            }
+            return queue.offer(message);
+        }
+        if ("block".equalsIgnoreCase(policy)) {
+            try {
+                return queue.offer(message, queueConfig.getBlockTimeoutAsJava().toNanos(), TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Writes a message that cannot be delivered now to the disk spool, if one is configured.
+     */
+    private boolean spool(TelegramMessage message) {
+        // Edits are best effort and meaningless once their debounce has passed
+        if (spool == null || message.getEditMessageId() != 0) {
+            return false;
+        }
+        if (isFoldable(message)) {
+            repeatFolder.abandon(message);
+        }
+        try {
+            render(message).setAttempts(0);
+            if (spool.append(message)) {
+                // A replayed alert written again no longer needs its old record
+                acknowledge(message);
+                metrics.spooled();
+                return true;
+            }
+        } catch (Exception e) {
+            addError("Failed to write alert to spool", e);
+        }
+        return false;
+    }
+
+    /**
+     * Takes a throttled message that found the hold or the queue full, like an alert finding the queue full.
+     */
+    private void dropHeld(TelegramMessage message) {
+        if (!spool(message)) {
+            metrics.droppedQueueFull();
+            acknowledge(message);
+        }
+    }
+
+    /**
+     * Releases the spool records of a replayed message that was delivered or dropped for good.
+     */
+    private void acknowledge(TelegramMessage message) {
+        DiskSpool spool = this.spool;
+        if (spool != null && message.getSpoolTickets() != null) {
+            spool.ack(message.getSpoolTickets());
+        }
+    }
+
+    /**
+     * Hands spooled alerts back to the senders once the queue is empty and nothing is waiting for
+     * a retry, so they never queue up behind newer alerts. Alerts logged while a replay is being
+     * sent can still go out before the older, replayed ones.
+     */
+    private void replaySpool() {
+        if (draining || retryScheduler.getPendingCount() > 0 || throttleHold.size() > 0 || !queue.isEmpty()) {
+            return;
+        }
+        try {
+            for (int room = queue.remainingCapacity() / 2; room > 0; room--) {
+                TelegramMessage message = spool.poll();
+                if (message == null) {
+                    return;
+                }
+                if (!queue.offer(message)) {
+                    // Written again behind the rest; if even that fails its record stays unacknowledged
+                    // and is replayed after the next restart
+                    spool(message);
+                    return;
+                }
+                metrics.spoolReplayed();
+            }
+        } catch (Exception e) {
+            addError("Error replaying alert spool", e);
+        }
     }
 
-    private boolean checkRateLimit(long timestamp) {
-        long lastReset = lastResetTime.get();
+    /**
+     * Spools messages the drain could not deliver, falling back to a summary on stderr.
+     */
+    private String handOverUndelivered(List<TelegramMessage> undelivered) {
+        List<TelegramMessage> lost = new ArrayList<>();
+        for (TelegramMessage message : undelivered) {
+            if (!spool(message)) {
+                lost.add(message);
+            }
+        }
+        if (spool != null) {
+            spool.close();
+            spool = null;
+        }
+        if (lost.isEmpty()) {
+            return undelivered.isEmpty() ? "" : ", all spooled";
+        }
+        System.err.println("TelegramAppender[" + getName() + "]: " + lost.size() + " messages could not be delivered before shutdown");
+        for (TelegramMessage message : lost) {
+            // One line per message: tags stripped, whitespace collapsed
+            String text = render(message).getText().replaceAll("<[^>]+>", "").replaceAll("\\s+", " ").trim();
+            System.err.println("  chat " + message.getChatId() + ": "
+                + (text.length() > 300 ? text.substring(0, 300) + "..." : text));
+        }
+        return ", " + (undelivered.size() - lost.size()) + " spooled, " + lost.size() + " written to stderr";
+    }
 
-        if (timestamp - lastReset >= rateConfig.getWindowAsJava().toMillis()) {
-            messageCount.set(0);
-            lastResetTime.set(timestamp);
+    private String format(AlertEvent event) {
+        long started = System.nanoTime();
+        String text = formatter.formatError(event);
+        metrics.formatted(System.nanoTime() - started);
+        return text;
+    }
+
+    /**
+     * Chats that get a new message; for the others the event was folded into an earlier one.
+     */
+    private List<String> unfolded(long groupKey, List<String> chats, long timestamp) {
+        List<String> remaining = null;
+        for (int i = 0; i < chats.size(); i++) {
+            boolean folded = repeatFolder.fold(groupKey, chats.get(i), timestamp);
+            if (folded) {
+                metrics.repeatFolded();
+                if (remaining == null) {
+                    remaining = new ArrayList<>(chats.subList(0, i));
+                }
+            } else if (remaining != null) {
+                remaining.add(chats.get(i));
+            }
         }
+        return remaining == null ? chats : remaining;
+    }
 
-        return messageCount.incrementAndGet() <= rateConfig.getMaxMessagesPerMinute();
+    private void sendAlarmLimit(List<String> chats) {
+        for (String chat : chats) {
+            enqueue(new TelegramMessage(
+                    chat,
+                    "🚨<b>ERROR REPORT:</b> Rate limit reached. Messages suspended until the limit recovers. Please check logs for details."));
+        }
     }
 
     private void processMessageQueue() {
         while (!Thread.currentThread().isInterrupted()) {
             try {
-                TelegramMessage message = queue.poll(200, TimeUnit.MILLISECONDS);
-                if (message != null) {
-//                    System.out.println("Sending message: " + message.getText());
-                    sendMessage(message);
+                TelegramMessage message = queue.poll(draining ? 20 : 200, TimeUnit.MILLISECONDS);
+                if (message == null) {
+                    if (draining && isIdle()) {
+                        return;
+                    }
+                    continue;
+                }
+                if (draining) {
+                    // Pack whatever is left as tightly as possible
+                    for (TelegramMessage batched : batcher.coalesce(
+                            drainBatch(message, Math.max(DRAIN_BATCH_SIZE, batchConfig.getMaxMessages()), 0))) {
+                        dispatch(batched);
+                    }
+                    continue;
+                }
+                if (batchConfig.getMaxMessages() <= 1) {
+                    dispatch(render(message));
+                    continue;
+                }
+                List<TelegramMessage> batch = drainBatch(message, batchConfig.getMaxMessages(),
+                    batchConfig.getLingerAsJava().toNanos());
+                for (TelegramMessage batched : batcher.coalesce(batch)) {
+                    dispatch(batched);
                 }
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
@@ -232,23 +702,177 @@ public class TelegramAppender extends AppenderBase<ILoggingEvent> {
         }
     }
 
+    /**
+     * Nothing queued, waiting for a retry or a send slot, or in flight, so a draining sender may exit.
+     */
+    private boolean isIdle() {
+        return queue.isEmpty() && retryScheduler.getPendingCount() == 0 && throttleHold.size() == 0
+            && (inFlight == null || inFlight.availablePermits() == httpConfig.getMaxInFlight());
+    }
+
+    /**
+     * Collects up to maxMessages alerts, waiting at most lingerNanos after the first.
+     */
+    private List<TelegramMessage> drainBatch(TelegramMessage first, int maxMessages, long lingerNanos)
+            throws InterruptedException {
+        List<TelegramMessage> batch = new ArrayList<>(maxMessages);
+        batch.add(first);
+        long deadline = System.nanoTime() + lingerNanos;
+        while (batch.size() < maxMessages) {
+            long remaining = deadline - System.nanoTime();
+            TelegramMessage next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+            if (next == null) {
+                break;
+            }
+            batch.add(next);
+        }
+        batch.replaceAll(this::render);
+        return batch;
+    }
+
+    /**
+     * Renders alerts captured with deferredFormatting on the sender thread.
+     */
+    private TelegramMessage render(TelegramMessage message) {
+        AlertEvent event = message.getEvent();
+        if (event != null) {
+            String text = event.getRendered();
+            if (text == null) {
+                text = format(event);
+                event.setRendered(text);
+            }
+            message.setText(text);
+            message.setEvent(null);
+        }
+        return message;
+    }
+
+    /**
+     * Sends on the calling worker, or in async mode hands the request to the HTTP client
+     * once an in-flight permit is available, so one thread can keep many requests open.
+     */
+    private void dispatch(TelegramMessage message) throws InterruptedException {
+        long backoff = retryScheduler.chatBackoff(message.getChatId(), System.currentTimeMillis());
+        if (backoff > 0) {
+            // The slot it may have reserved passes while the chat is blocked
+            message.setThrottleReserved(false);
+            metrics.throttled();
+            throttleHold.hold(message, backoff);
+            return;
+        }
+        if (message.isThrottleReserved()) {
+            // Back at its reserved slot, taking another would push it and everything behind it back
+            message.setThrottleReserved(false);
+        } else {
+            long throttle = sendThrottle.reserve(message.getChatId(), System.nanoTime());
+            if (throttle > 0) {
+                message.setThrottleReserved(true);
+                metrics.throttled();
+                throttleHold.hold(message, TimeUnit.NANOSECONDS.toMillis(throttle) + 1);
+                return;
+            }
+        }
+        // Claimed only once the request goes out, and released if it fails, so a deferred or
+        // retried alert, which may come back as a batcher copy, never meets its own claim.
+        // Repeats queued behind a slow send of their group are folded here rather than on append.
+        if (isFoldable(message) && repeatFolder.claim(message, System.currentTimeMillis())) {
+            metrics.repeatFolded();
+            return;
+        }
+
+        if (inFlight == null) {
+            sendMessage(message);
+            return;
+        }
+
+        inFlight.acquire();
+        if (sendExecutor != null) {
+            try {
+                sendExecutor.execute(() -> {
+                    try {
+                        sendMessage(message);
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                inFlight.release();
+                sendMessage(message);
+            }
+            return;
+        }
+
+        long started = System.nanoTime();
+        try {
+            httpClient.postAsync(uriFor(message), payloadEncoder.encode(message), JSON_HEADERS)
+                .whenComplete((response, error) -> {
+                    inFlight.release();
+                    if (error != null) {
+                        onFailure(message, error, started);
+                    } else {
+                        onSent(message, started, response);
+                    }
+                });
+        } catch (Exception e) {
+            inFlight.release();
+            onFailure(message, e, started);
+        }
+    }
+
     private void sendMessage(TelegramMessage message) {
-        String url = MessageFormat.format(apiUrl, botToken);
+        long started = System.nanoTime();
+        try {
+            String response = httpClient.post(uriFor(message), payloadEncoder.encode(message), JSON_HEADERS);
+            onSent(message, started, response);
+        } catch (Exception e) {
+            onFailure(message, e, started);
+        }
+    }
 
-        Map<String, String> headers = Map.of("Content-Type", "application/json");
+    private void onFailure(TelegramMessage message, Throwable error, long started) {
+        metrics.failed(System.nanoTime() - started);
+        if (isFoldable(message)) {
+            repeatFolder.abandon(message);
+        }
+        if (!retryScheduler.onFailure(message, error)) {
+            acknowledge(message);
+            if (repeatFolder != null && message.getEditMessageId() != 0) {
+                repeatFolder.abandon(message);
+            }
+            addError("Failed to send message to Telegram after " + message.getAttempts() + " attempts", error);
+        }
+    }
 
-        String text = message.getText();
-        Map<String, String> payloadMap = Map.of(
-            "chat_id", message.getChatId(),
-            "text", text,
-            "parse_mode", message.getParseMode()
-        );
+    private void onSent(TelegramMessage message, long started, String response) {
+        metrics.sent(message.getAlertCount(), System.nanoTime() - started);
+        acknowledge(message);
+        if (isFoldable(message)) {
+            long messageId = parseMessageId(response);
+            if (messageId > 0) {
+                repeatFolder.sent(message, messageId);
+            } else {
+                repeatFolder.abandon(message);
+            }
+        }
+    }
+
+    /**
+     * A single alert that later repeats of its group can be folded into.
+     */
+    private boolean isFoldable(TelegramMessage message) {
+        return repeatFolder != null && message.getGroupKey() != 0 && message.getEditMessageId() == 0
+            && message.getAlertCount() == 1;
+    }
 
+    private URI uriFor(TelegramMessage message) {
+        return message.getEditMessageId() != 0 ? editUri : sendUri;
+    }
+
+    private long parseMessageId(String response) {
         try {
-            String payLoad = objectMapper.writeValueAsString(payloadMap);
-            httpClient.post(url, payLoad, headers);
+            return objectMapper.readTree(response).path("result").path("message_id").asLong(0);
         } catch (Exception e) {
-            addError("Failed to send message to Telegram", e);
+            return 0;
         }
     }
 
@@ -256,10 +880,31 @@ public class TelegramAppender extends AppenderBase<ILoggingEvent> {
     private boolean validateConfigurations() {
         try {
             // Validate required fields
-            if (apiUrl == null || botToken == null || chatId == null) {
+            if (apiUrl == null || botToken == null || (chatId == null && routes.isEmpty())) {
                 addError("Missing required configuration: url, botToken, or chatId");
                 return false;
             }
+            if (routes.size() > ChatRouter.MAX_ROUTES) {
+                addError("Too many routes: " + routes.size() + " (at most " + ChatRouter.MAX_ROUTES + ")");
+                return false;
+            }
+            for (ChatRoute route : routes) {
+                if (route.getChatId() == null || route.getChatId().isBlank()) {
+                    addError("Route for logger '" + route.getLogger() + "' has no chatId");
+                    return false;
+                }
+                if (ChatRouter.levelIndex(Level.toLevel(route.getLevel(), Level.OFF)) < 0) {
+                    addError("Invalid route level: " + route.getLevel() + " (expected TRACE, DEBUG, INFO, WARN or ERROR)");
+                    return false;
+                }
+            }
+
+            try {
+                URI.create(MessageFormat.format(apiUrl, botToken));
+            } catch (IllegalArgumentException e) {
+                addError("Invalid url: " + apiUrl, e);
+                return false;
+            }
 
             // Validate durations
             guardConfig.getWindow();
@@ -267,6 +912,85 @@ public class TelegramAppender extends AppenderBase<ILoggingEvent> {
             httpConfig.getReadTimeoutAsJava();
             threadConfig.getKeepAliveTimeAsJava();
             rateConfig.getWindowAsJava();
+            batchConfig.getLingerAsJava();
+            spoolConfig.getReplayIntervalAsJava();
+            guardConfig.getRepeatEditWindowAsJava();
+            guardConfig.getRepeatEditDebounceAsJava();
+            guardConfig.getDigestIntervalAsJava();
+            queueConfig.getBlockTimeoutAsJava();
+            Duration.parse(systemStatsInterval);
+            Duration.parse(drainTimeout);
+            retryConfig.getInitialBackoffAsJava();
+            retryConfig.getMaxBackoffAsJava();
+
+            String groupStrategy = guardConfig.getGroupStrategy();
+            if (!"message".equalsIgnoreCase(groupStrategy) && !"stack".equalsIgnoreCase(groupStrategy)) {
+                addError("Invalid groupStrategy: " + groupStrategy + " (expected message or stack)");
+                return false;
+            }
+            Duration lease = clusterConfig.getLeaseAsJava();
+            if (lease.isNegative() || lease.isZero() || lease.toDays() > 30) {
+                addError("Invalid clusterLease: " + clusterConfig.getLease() + " (expected more than PT0S, at most P30D)");
+                return false;
+            }
+            String clusterStore = clusterConfig.getStore();
+            if ("file".equalsIgnoreCase(clusterStore)) {
+                if (clusterConfig.getFile() == null) {
+                    addError("clusterFile is required for the file cluster store");
+                    return false;
+                }
+            } else if ("gossip".equalsIgnoreCase(clusterStore)) {
+                if (clusterConfig.getGossipPeers() == null) {
+                    addError("clusterGossipPeers is required for the gossip cluster store");
+                    return false;
+                }
+            } else if (!"local".equalsIgnoreCase(clusterStore)) {
+                addError("Invalid clusterStore: " + clusterStore + " (expected local, file or gossip)");
+                return false;
+            }
+            Duration digestInterval = guardConfig.getDigestIntervalAsJava();
+            if (digestInterval != null && (digestInterval.isNegative() || digestInterval.isZero())) {
+                addError("Invalid digestInterval: " + guardConfig.getDigestInterval() + " (expected more than PT0S)");
+                return false;
+            }
+            if (guardConfig.getDigestSize() < 1 || guardConfig.getDigestCapacity() < guardConfig.getDigestSize()) {
+                addError("Invalid digestSize/digestCapacity: " + guardConfig.getDigestSize() + "/"
+                    + guardConfig.getDigestCapacity() + " (need 1 <= digestSize <= digestCapacity)");
+                return false;
+            }
+            if (guardConfig.getGroupStackDepth() < 1) {
+                addError("Invalid groupStackDepth: " + guardConfig.getGroupStackDepth());
+                return false;
+            }
+            String windowType = guardConfig.getWindowType();
+            if (!"exact".equalsIgnoreCase(windowType) && !"bucketed".equalsIgnoreCase(windowType)) {
+                addError("Invalid windowType: " + windowType + " (expected exact or bucketed)");
+                return false;
+            }
+            if (guardConfig.getWindowBuckets() < 1) {
+                addError("Invalid windowBuckets: " + guardConfig.getWindowBuckets());
+                return false;
+            }
+            if (!"array".equalsIgnoreCase(queueConfig.getType()) && !"ring".equalsIgnoreCase(queueConfig.getType())) {
+                addError("Invalid queueType: " + queueConfig.getType() + " (expected array or ring)");
+                return false;
+            }
+            String waitStrategy = queueConfig.getWaitStrategy();
+            if (!"blocking".equalsIgnoreCase(waitStrategy) && !"sleeping".equalsIgnoreCase(waitStrategy)
+                && !"yielding".equalsIgnoreCase(waitStrategy)) {
+                addError("Invalid queueWaitStrategy: " + waitStrategy + " (expected blocking, sleeping or yielding)");
+                return false;
+            }
+            String overflowPolicy = queueConfig.getOverflowPolicy();
+            if (!"dropNewest".equalsIgnoreCase(overflowPolicy) && !"dropOldest".equalsIgnoreCase(overflowPolicy)
+                && !"block".equalsIgnoreCase(overflowPolicy)) {
+                addError("Invalid queueOverflowPolicy: " + overflowPolicy + " (expected dropNewest, dropOldest or block)");
+                return false;
+            }
+            if (guardConfig.getMaxGroups() < 1) {
+                addError("Invalid maxGroups: " + guardConfig.getMaxGroups());
+                return false;
+            }
 
             if (threadConfig.getMaxPoolSize() < threadConfig.getCorePoolSize()) {
                 threadConfig.setMaxPoolSize(threadConfig.getCorePoolSize());
@@ -278,6 +1002,31 @@ public class TelegramAppender extends AppenderBase<ILoggingEvent> {
                 addError("Invalid thread pool configuration");
                 return false;
             }
+            if (httpConfig.getMaxInFlight() < 1) {
+                addError("Invalid httpMaxInFlight: " + httpConfig.getMaxInFlight());
+                return false;
+            }
+            if (rateConfig.getMaxMessagesPerMinute() < 1) {
+                addError("Invalid rateLimitMaxMessages: " + rateConfig.getMaxMessagesPerMinute());
+                return false;
+            }
+            if (retryConfig.getMaxAttempts() < 1 || retryConfig.getMaxPending() < 0) {
+                addError("Invalid retry configuration");
+                return false;
+            }
+            if (batchConfig.getMaxMessages() < 1 || batchConfig.getMaxChars() < 1) {
+                addError("Invalid batch configuration");
+                return false;
+            }
+            if (spoolConfig.getSegmentSize() < 64 * 1024 || spoolConfig.getMaxSegments() < 1) {
+                addError("Invalid spool configuration: segments must be at least 65536 bytes");
+                return false;
+            }
+            Duration replayInterval = spoolConfig.getReplayIntervalAsJava();
+            if (replayInterval.isNegative() || replayInterval.isZero()) {
+                addError("Invalid spoolReplayInterval: " + spoolConfig.getReplayInterval() + " (expected more than PT0S)");
+                return false;
+            }
 
             return true;
         } catch (Exception e) {
@@ -289,23 +1038,215 @@ public class TelegramAppender extends AppenderBase<ILoggingEvent> {
 
     private void initializeComponents() {
         try {
+            metrics = new AppenderMetrics(metricsListener);
             initializeExecutorService();
-            formatter = new AlertFormatter(timezone);
-            this.queue = new ArrayBlockingQueue<>(threadConfig.getQueueCapacity());
+            TimestampFormatter timestamps = new TimestampFormatter(timezone);
+            PackageFilter packages = new PackageFilter(stackIncludes, stackExcludes);
+            formatter = new AlertFormatter(appName, hostName, hostIp, timestamps,
+                new SystemStatsSampler(timestamps, Duration.parse(systemStatsInterval), scheduler), packages);
+            batcher = new MessageBatcher(batchConfig.getMaxChars());
+            this.sendUri = URI.create(MessageFormat.format(apiUrl, botToken));
+            this.editUri = sendUri.resolve("editMessageText");
+            this.payloadEncoder = new PayloadEncoder(objectMapper.getFactory(),
+                Math.max(threadConfig.getMaxPoolSize(), httpConfig.getMaxInFlight()));
+            this.queue = "ring".equalsIgnoreCase(queueConfig.getType())
+                ? new RingBufferQueue<>(threadConfig.getQueueCapacity(), RingBufferQueue.WaitStrategy.of(queueConfig.getWaitStrategy()))
+                : new ArrayBlockingQueue<>(threadConfig.getQueueCapacity());
             this.httpClient = HttpClient.of(httpConfig.getConnectTimeoutAsJava(), httpConfig.getReadTimeoutAsJava(), httpConfig.isFollowRedirects());
-            this.rateGuard = new RateGuard(guardConfig, timezone);
+            this.inFlight = httpConfig.isAsync() || sendExecutor != null ? new Semaphore(httpConfig.getMaxInFlight()) : null;
+            this.rateLimiter = new GcraLimiter(rateConfig.getMaxMessagesPerMinute(), rateConfig.getWindowAsJava(),
+                rateConfig.getMaxMessagesPerMinute());
+            this.sendThrottle = new SendThrottle(rateConfig);
+            this.retryScheduler = new RetryScheduler(retryConfig, scheduler, queue::offer, this::spool, objectMapper, metrics);
+            this.throttleHold = new ThrottleHold(threadConfig.getQueueCapacity(), scheduler, queue::offer, this::dropHeld);
+            this.stateStore = createStateStore();
+            this.rateGuard = new RateGuard(guardConfig, timestamps, createGroupKeys(packages), stateStore,
+                clusterConfig.getLeaseAsJava());
+            this.router = new ChatRouter(routes, chatId);
+            if (guardConfig.isRepeatEdit()) {
+                this.repeatFolder = new RepeatFolder(guardConfig.getRepeatEditWindowAsJava().toMillis(),
+                    guardConfig.getRepeatEditDebounceAsJava().toMillis(), batchConfig.getMaxChars(), timezone,
+                    scheduler, this::enqueue);
+            }
+
+            metrics.bindGauges(queue::size, rateGuard::getGroupCount, rateGuard::getEvictedCount);
+            openSpool();
 
             startMessageProcessors();
+            scheduleGuardSweep();
+            scheduleDigest();
+            registerMetrics();
 
 //            addShutdownHook();
 
         } catch (Exception e) {
             addError("Failed to initialize components", e);
+            releaseComponents();
             throw new RuntimeException("Component initialization failed", e);
         }
     }
 
+    /**
+     * Undoes a partial start: stop() is never called for an appender that failed to start, so the
+     * sender threads, the store's socket or file and the spool would otherwise leak.
+     */
+    private void releaseComponents() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        if (sendExecutor != null) {
+            sendExecutor.shutdownNow();
+        }
+        if (stateStore != null) {
+            stateStore.close();
+        }
+        if (spool != null) {
+            spool.close();
+            spool = null;
+        }
+        unregisterMetrics();
+    }
+
+    private GroupKeyStrategy createGroupKeys(PackageFilter packages) {
+        if ("stack".equalsIgnoreCase(guardConfig.getGroupStrategy())) {
+            return new StackGroupKeys(guardConfig.getGroupStackDepth(), packages);
+        }
+        return new MessageGroupKeys();
+    }
+
+    /**
+     * The configured send lease store. A shared store that cannot be opened leaves this node
+     * sending on its own rather than not at all.
+     */
+    private GuardStateStore createStateStore() {
+        if (guardStateStore != null) {
+            return guardStateStore;
+        }
+        String store = clusterConfig.getStore();
+        try {
+            if ("file".equalsIgnoreCase(store)) {
+                return new SharedFileGuardStateStore(Paths.get(clusterConfig.getFile()), clusterConfig.getFileSlots(),
+                    clusterConfig.getLeaseAsJava().toMillis());
+            }
+            if ("gossip".equalsIgnoreCase(store)) {
+                List<InetSocketAddress> peers = new ArrayList<>();
+                for (String peer : clusterConfig.getGossipPeers().split(",")) {
+                    if (!peer.isBlank()) {
+                        peers.add(parseAddress(peer.trim()));
+                    }
+                }
+                return new GossipGuardStateStore(parseAddress(clusterConfig.getGossipBind()), peers);
+            }
+        } catch (IOException | RuntimeException e) {
+            addError("Failed to open " + store + " guard state store, deduplicating within this process only", e);
+        }
+        return new LocalGuardStateStore();
+    }
+
+    private static InetSocketAddress parseAddress(String hostPort) {
+        int colon = hostPort.lastIndexOf(':');
+        if (colon < 0) {
+            throw new IllegalArgumentException("Expected host:port, got " + hostPort);
+        }
+        return new InetSocketAddress(hostPort.substring(0, colon), Integer.parseInt(hostPort.substring(colon + 1)));
+    }
+
+    private void registerMetrics() {
+        if (!jmxEnabled) {
+            return;
+        }
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName("io.github.haloka.telegram.logback:type=TelegramAppender,name="
+                + ObjectName.quote(getName() != null ? getName() : "telegram"));
+            server.registerMBean(new StandardMBean(metrics, TelegramAppenderMetricsMBean.class), name);
+            metricsName = name;
+        } catch (Exception e) {
+            addWarn("Failed to register JMX metrics, continuing without them", e);
+        }
+    }
+
+    private void unregisterMetrics() {
+        if (metricsName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(metricsName);
+        } catch (Exception e) {
+            addWarn("Failed to unregister JMX metrics", e);
+        }
+        metricsName = null;
+    }
+
+    private void openSpool() {
+        if (spoolConfig.getDirectory() == null) {
+            return;
+        }
+        try {
+            DiskSpool opened = new DiskSpool(Paths.get(spoolConfig.getDirectory()),
+                spoolConfig.getSegmentSize(), spoolConfig.getMaxSegments());
+            metrics.bindSpool(opened::size, opened::getEvictedCount);
+            spool = opened;
+        } catch (IOException e) {
+            addError("Failed to open alert spool in " + spoolConfig.getDirectory() + ", continuing without it", e);
+            return;
+        }
+        long interval = spoolConfig.getReplayIntervalAsJava().toMillis();
+        scheduler.scheduleWithFixedDelay(this::replaySpool, 0, interval, TimeUnit.MILLISECONDS);
+    }
+
+    private void scheduleGuardSweep() {
+        long interval = Math.max(1000, Math.min(guardConfig.getWindow().toMillis(), 60_000));
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                rateGuard.evictIdle(System.currentTimeMillis());
+                if (repeatFolder != null) {
+                    repeatFolder.evictExpired(System.currentTimeMillis());
+                }
+            } catch (Exception e) {
+                addError("Error evicting idle alert groups", e);
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    private void scheduleDigest() {
+        Duration interval = guardConfig.getDigestIntervalAsJava();
+        if (interval == null) {
+            return;
+        }
+        digest = new SuppressionDigest(router.allChats(), guardConfig.getDigestCapacity(), guardConfig.getDigestSize(),
+            System.currentTimeMillis());
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                digest.drain(System.currentTimeMillis())
+                    .forEach((chat, message) -> enqueue(new TelegramMessage(chat, message)));
+            } catch (Exception e) {
+                addError("Error sending suppression digest", e);
+            }
+        }, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
     private void initializeExecutorService() {
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r);
+            thread.setName("telegram-logging-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        if (threadConfig.isVirtual()) {
+            if (VirtualThreads.isAvailable()) {
+                // A single dispatcher hands every send to a fresh virtual thread, bounded by inFlight
+                this.executor = VirtualThreads.newExecutor("telegram-logging-");
+                this.sendExecutor = VirtualThreads.newExecutor("telegram-send-");
+                return;
+            }
+            addWarn("threadVirtual needs JDK 21 or newer, running " + Runtime.version() + "; using platform threads");
+        }
+
         ThreadFactory threadFactory = new ThreadFactory() {
             private final AtomicInteger counter = new AtomicInteger();
             @Override
@@ -317,20 +1258,21 @@ public class TelegramAppender extends AppenderBase<ILoggingEvent> {
             }
         };
 
+        // In async mode a single dispatcher multiplexes all requests
+        int poolSize = httpConfig.isAsync() ? 1 : threadConfig.getCorePoolSize();
         this.executor = new ThreadPoolExecutor(
-            threadConfig.getCorePoolSize(),
-            threadConfig.getMaxPoolSize(),
+            poolSize,
+            Math.max(poolSize, httpConfig.isAsync() ? 1 : threadConfig.getMaxPoolSize()),
             threadConfig.getKeepAliveTimeAsJava().toSeconds(),
             TimeUnit.SECONDS,
             new ArrayBlockingQueue<>(threadConfig.getQueueCapacity()),
             threadFactory,
             new ThreadPoolExecutor.DiscardPolicy()
         );
-
     }
 
     private void startMessageProcessors() {
-        int processorCount = threadConfig.getCorePoolSize();
+        int processorCount = httpConfig.isAsync() || sendExecutor != null ? 1 : threadConfig.getCorePoolSize();
         for (int i = 0; i < processorCount; i++) {
             executor.submit(this::processMessageQueue);
         }
@@ -0,0 +1,72 @@
+package io.github.haloka.telegram.logback;
+
+/**
+ * JMX view of a running {@link TelegramAppender}, registered as
+ * {@code io.github.haloka.telegram.logback:type=TelegramAppender,name=<appender name>}.
+ * Latencies are in microseconds.
+ */
+public interface TelegramAppenderMetricsMBean {
+
+    long getEventsSeen();
+
+    /** Events swallowed by alert suppression */
+    long getEventsSuppressed();
+
+    long getSuppressionNotices();
+
+    long getEventsRateLimited();
+
+    /** Alerts left to the node holding their group's send lease */
+    long getEventsDeduplicated();
+
+    long getEnqueued();
+
+    long getDroppedQueueFull();
+
+    long getAlertsSent();
+
+    long getRequestsSent();
+
+    double getAlertsPerRequest();
+
+    long getFailed();
+
+    long getRetried();
+
+    long getRetryDropped();
+
+    /** Requests held back for a send slot or a chat's 429 block; not retries, they take no attempt */
+    long getThrottled();
+
+    /** Repeats folded into an occurrence counter edit instead of a new message, per chat */
+    long getRepeatsFolded();
+
+    /** Alerts written to the disk spool instead of being dropped */
+    long getSpooled();
+
+    long getSpoolReplayed();
+
+    /** Alerts currently waiting in the disk spool */
+    long getSpoolSize();
+
+    /** Spooled alerts lost to oldest-first eviction */
+    long getSpoolEvicted();
+
+    int getQueueDepth();
+
+    int getAlertGroups();
+
+    long getAlertGroupsEvicted();
+
+    long getFormatLatencyP50Micros();
+
+    long getFormatLatencyP99Micros();
+
+    long getFormatLatencyMaxMicros();
+
+    long getSendLatencyP50Micros();
+
+    long getSendLatencyP99Micros();
+
+    long getSendLatencyMaxMicros();
+}
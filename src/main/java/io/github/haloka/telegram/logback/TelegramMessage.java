@@ -1,5 +1,6 @@
 package io.github.haloka.telegram.logback;
 
+import java.util.List;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
@@ -9,10 +10,29 @@ class TelegramMessage {
     private String chatId;
     private String text;
     private String parseMode;
+    /** Number of alerts packed into this message by {@link MessageBatcher} */
+    private int alertCount = 1;
+    /** Event still to be rendered into {@link #text} by a sender thread */
+    private AlertEvent event;
+    /** Failed delivery attempts so far */
+    private int attempts = 0;
+    /** Alert group the message was sent for, 0 if none */
+    private long groupKey;
+    /** Telegram message to replace through editMessageText, 0 to send a new one */
+    private long editMessageId;
+    /** Deferred by {@link SendThrottle} with a send slot already reserved for it */
+    private boolean throttleReserved;
+    /** Spool records the message was replayed from, acknowledged once it is delivered or dropped */
+    private List<DiskSpool.Ticket> spoolTickets;
 
     public TelegramMessage(String chatId, String text) {
         this.chatId = chatId;
         this.text = text;
         this.parseMode = "HTML";
     }
+
+    TelegramMessage(String chatId, AlertEvent event) {
+        this(chatId, (String) null);
+        this.event = event;
+    }
 }
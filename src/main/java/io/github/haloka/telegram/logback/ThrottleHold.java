@@ -0,0 +1,148 @@
+package io.github.haloka.telegram.logback;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Holds messages that may not go out yet, because {@link SendThrottle} gave them a later slot or
+ * their chat is blocked after a 429, until they are due and offers them back to the queue. This
+ * is separate from {@link RetryScheduler}: waiting for a slot is not a failure, so it takes no
+ * attempt and none of the retry slots. Each chat has one FIFO and at most one scheduled wake-up,
+ * which hands back every due message from the head, so a chat's messages leave in the order they
+ * were held.
+ */
+class ThrottleHold {
+    private final int capacity;
+    private final ScheduledExecutorService scheduler;
+    private final Predicate<TelegramMessage> requeue;
+    private final Consumer<TelegramMessage> overflow;
+
+    private final ConcurrentHashMap<String, Chat> chats = new ConcurrentHashMap<>();
+    private final AtomicInteger held = new AtomicInteger();
+    private volatile boolean closed;
+
+    private static final class Chat {
+        /** Guarded by the chat */
+        private final ArrayDeque<Waiting> waiting = new ArrayDeque<>();
+        private boolean scheduled;
+    }
+
+    private static final class Waiting {
+        private final long due;
+        private final TelegramMessage message;
+
+        private Waiting(long due, TelegramMessage message) {
+            this.due = due;
+            this.message = message;
+        }
+    }
+
+    /**
+     * @param capacity messages held at once over all chats
+     * @param requeue  offers a due message back to the send queue, false when it is full
+     * @param overflow takes messages that find the hold or the queue full
+     */
+    ThrottleHold(int capacity, ScheduledExecutorService scheduler, Predicate<TelegramMessage> requeue,
+                 Consumer<TelegramMessage> overflow) {
+        this.capacity = capacity;
+        this.scheduler = scheduler;
+        this.requeue = requeue;
+        this.overflow = overflow;
+    }
+
+    /**
+     * Holds the message for delayMillis, or passes it to the overflow if the hold is full.
+     */
+    void hold(TelegramMessage message, long delayMillis) {
+        if (held.incrementAndGet() > capacity) {
+            held.decrementAndGet();
+            overflow.accept(message);
+            return;
+        }
+        long due = System.currentTimeMillis() + delayMillis;
+        while (true) {
+            Chat chat = chats.computeIfAbsent(message.getChatId(), id -> new Chat());
+            synchronized (chat) {
+                // Emptied and removed by release meanwhile
+                if (chats.get(message.getChatId()) != chat) {
+                    continue;
+                }
+                chat.waiting.addLast(new Waiting(due, message));
+                if (!chat.scheduled && !closed) {
+                    chat.scheduled = wakeUp(message.getChatId(), chat, delayMillis);
+                }
+                return;
+            }
+        }
+    }
+
+    int size() {
+        return held.get();
+    }
+
+    /**
+     * Stops handing messages back; they stay held for {@link #drainHeld}.
+     */
+    void close() {
+        closed = true;
+    }
+
+    /**
+     * Takes every message still held.
+     */
+    List<TelegramMessage> drainHeld() {
+        List<TelegramMessage> drained = new ArrayList<>();
+        for (Chat chat : chats.values()) {
+            synchronized (chat) {
+                for (Waiting waiting : chat.waiting) {
+                    drained.add(waiting.message);
+                }
+                held.addAndGet(-chat.waiting.size());
+                chat.waiting.clear();
+            }
+        }
+        return drained;
+    }
+
+    private boolean wakeUp(String chatId, Chat chat, long delayMillis) {
+        try {
+            scheduler.schedule(() -> release(chatId, chat), Math.max(0, delayMillis), TimeUnit.MILLISECONDS);
+            return true;
+        } catch (Exception e) {
+            // Scheduler already shut down, the messages wait for drainHeld
+            return false;
+        }
+    }
+
+    private void release(String chatId, Chat chat) {
+        List<TelegramMessage> due = new ArrayList<>();
+        synchronized (chat) {
+            chat.scheduled = false;
+            if (closed) {
+                return;
+            }
+            long now = System.currentTimeMillis();
+            while (!chat.waiting.isEmpty() && chat.waiting.peekFirst().due <= now) {
+                due.add(chat.waiting.pollFirst().message);
+            }
+            held.addAndGet(-due.size());
+            if (!chat.waiting.isEmpty()) {
+                chat.scheduled = wakeUp(chatId, chat, chat.waiting.peekFirst().due - now);
+            } else {
+                chats.remove(chatId, chat);
+            }
+        }
+        for (TelegramMessage message : due) {
+            if (!requeue.test(message)) {
+                overflow.accept(message);
+            }
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package io.github.haloka.telegram.logback;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Zone-bound "yyyy-MM-dd HH:mm:ss" formatter that remembers the last rendered second, so
+ * an alert burst renders each distinct second once. Safe to share across threads: the
+ * cache is one immutable entry swapped through a volatile field.
+ */
+class TimestampFormatter {
+    private final DateTimeFormatter formatter;
+    private volatile Rendered last = new Rendered(Long.MIN_VALUE, null);
+
+    private static final class Rendered {
+        private final long epochSecond;
+        private final String text;
+
+        private Rendered(long epochSecond, String text) {
+            this.epochSecond = epochSecond;
+            this.text = text;
+        }
+    }
+
+    TimestampFormatter(String timezone) {
+        this.formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss").withZone(ZoneId.of(timezone));
+    }
+
+    String format(long epochMillis) {
+        long epochSecond = Math.floorDiv(epochMillis, 1000);
+        Rendered cached = last;
+        if (cached.epochSecond == epochSecond) {
+            return cached.text;
+        }
+        String text = formatter.format(Instant.ofEpochSecond(epochSecond));
+        last = new Rendered(epochSecond, text);
+        return text;
+    }
+}
@@ -1,9 +1,6 @@
 package io.github.haloka.telegram.logback;
 
 import ch.qos.logback.classic.spi.IThrowableProxy;
-import java.time.Instant;
-import java.time.ZoneId;
-import java.time.format.DateTimeFormatter;
 import lombok.experimental.UtilityClass;
 
 @UtilityClass
@@ -12,12 +9,6 @@ class Utils {
     int GROUP_MESSAGE_LENGTH = 60;
     int GROUP_THROWABLE_LENGTH = 250;
 
-    static String formatDateTime(Instant instant, String timezone) {
-        return DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")
-            .withZone(ZoneId.of(timezone))
-            .format(instant);
-    }
-
     String generateGroupKey(String message, IThrowableProxy throwable) {
         StringBuilder key = new StringBuilder();
         if (throwable != null) {
@@ -38,6 +29,40 @@ class Utils {
         return message.length() > maxLength ? message.substring(0, maxLength) + "..." : message;
     }
 
+    /**
+     * Replaces ids, counters, UUIDs and hex values with {@code #}, mirroring
+     * {@link Fingerprint#mixNormalized}.
+     */
+    String normalize(String message, int maxLength) {
+        if (message == null) {
+            return "";
+        }
+        int length = Math.min(message.length(), maxLength);
+        StringBuilder sb = new StringBuilder(length);
+        int i = 0;
+        while (i < length) {
+            if (!Fingerprint.isVariableChar(message.charAt(i))) {
+                sb.append(message.charAt(i++));
+                continue;
+            }
+            int runStart = i;
+            boolean hasDigit = false;
+            while (i < length && Fingerprint.isVariableChar(message.charAt(i))) {
+                hasDigit |= Character.isDigit(message.charAt(i));
+                i++;
+            }
+            if (hasDigit) {
+                sb.append('#');
+            } else {
+                sb.append(message, runStart, i);
+            }
+        }
+        if (message.length() > maxLength) {
+            sb.append("...");
+        }
+        return sb.toString();
+    }
+
     static boolean hasText(String str) {
         return str != null && !str.isBlank();
     }
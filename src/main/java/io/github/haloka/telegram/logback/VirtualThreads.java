@@ -0,0 +1,61 @@
+package io.github.haloka.telegram.logback;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Reflective access to JDK 21 virtual threads, so the appender still builds and runs on JDK 17.
+ */
+final class VirtualThreads {
+    private static final Method OF_VIRTUAL;
+    private static final Method NAME;
+    private static final Method FACTORY;
+    private static final Method THREAD_PER_TASK;
+
+    static {
+        Method ofVirtual = null;
+        Method name = null;
+        Method factory = null;
+        Method threadPerTask = null;
+        try {
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            Class<?> builder = Class.forName("java.lang.Thread$Builder");
+            name = builder.getMethod("name", String.class, long.class);
+            factory = builder.getMethod("factory");
+            threadPerTask = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+        } catch (ReflectiveOperationException e) {
+            ofVirtual = null;
+        }
+        OF_VIRTUAL = ofVirtual;
+        NAME = name;
+        FACTORY = factory;
+        THREAD_PER_TASK = threadPerTask;
+    }
+
+    private VirtualThreads() {
+    }
+
+    static boolean isAvailable() {
+        return OF_VIRTUAL != null;
+    }
+
+    /**
+     * Executor starting one virtual thread per task, named prefix1, prefix2, ...
+     *
+     * @throws IllegalStateException on a JDK without virtual threads
+     */
+    static ExecutorService newExecutor(String prefix) {
+        if (!isAvailable()) {
+            throw new IllegalStateException("Virtual threads require JDK 21 or newer");
+        }
+        try {
+            Object builder = NAME.invoke(OF_VIRTUAL.invoke(null), prefix, 1L);
+            ThreadFactory factory = (ThreadFactory) FACTORY.invoke(builder);
+            return (ExecutorService) THREAD_PER_TASK.invoke(null, factory);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Failed to create virtual thread executor", e);
+        }
+    }
+}
@@ -1,27 +1,28 @@
 package io.github.haloka.telegram.logback;
 
 import java.time.Duration;
-import java.util.Arrays;
 
-class Window {
-    private final long[] timestamps;
-    private final Duration windowTime;
-    private int currentIndex = 0;
+/**
+ * Sliding-window event counter backing each alert group in {@link RateGuard}.
+ * Implementations are not thread-safe; callers hold the group's monitor.
+ */
+interface Window {
 
-    public Window(Duration windowTime, int windowSlotSize) {
-        this.windowTime = windowTime;
-        this.timestamps = new long[windowSlotSize];
-    }
+    void recordEvent(long timestamp);
 
-    public void recordEvent(long timestamp) {
-        timestamps[currentIndex] = timestamp;
-        currentIndex = (currentIndex + 1) % timestamps.length;
-    }
+    /**
+     * Number of events recorded within the window ending at {@code timestamp}.
+     */
+    int getEventCount(long timestamp);
 
-    public int getEventCount(long timestamp) {
-        long windowStart = timestamp - windowTime.toMillis();
-        return (int) Arrays.stream(timestamps)
-                .filter(t -> t > windowStart)
-                .count();
+    /**
+     * @param type     "exact" or "bucketed"
+     * @param capacity count at which the window may saturate, the largest stage count + 1
+     */
+    static Window create(String type, Duration windowTime, int capacity, int buckets) {
+        if ("bucketed".equalsIgnoreCase(type)) {
+            return new BucketedWindow(windowTime, buckets);
+        }
+        return new ExactWindow(windowTime, capacity);
     }
-}
\ No newline at end of file
+}
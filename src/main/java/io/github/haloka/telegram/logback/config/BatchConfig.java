@@ -0,0 +1,18 @@
+package io.github.haloka.telegram.logback.config;
+
+import java.time.Duration;
+import lombok.Data;
+
+@Data
+public class BatchConfig {
+    /** Alerts drained per send cycle; 1 disables batching */
+    private int maxMessages = 1;
+    /** How long a worker waits for more alerts after the first one */
+    private String linger = "PT0S";
+    /** Telegram's sendMessage text limit */
+    private int maxChars = 4096;
+
+    public Duration getLingerAsJava() {
+        return Duration.parse(linger);
+    }
+}
@@ -0,0 +1,17 @@
+package io.github.haloka.telegram.logback.config;
+
+import lombok.Data;
+
+@Data
+public class ChatRoute {
+    /** Logger name prefix, matched on whole segments; empty matches every logger */
+    private String logger = "";
+    /** Lowest level routed, e.g. WARN also routes ERROR */
+    private String level = "TRACE";
+    /** Optional MDC key the event must carry */
+    private String mdcKey;
+    /** Required value of mdcKey; any value when not set */
+    private String mdcValue;
+    /** Comma-separated chat ids the matching alerts are sent to */
+    private String chatId;
+}
@@ -0,0 +1,24 @@
+package io.github.haloka.telegram.logback.config;
+
+import java.time.Duration;
+import lombok.Data;
+
+@Data
+public class ClusterConfig {
+    /** Where send leases are shared: "local" (default), "file" or "gossip" */
+    private String store = "local";
+    /** How long the node that sent a group's alert stays its only sender */
+    private String lease = "PT1M";
+    /** Lease table shared by the processes of one host, for the "file" store */
+    private String file;
+    /** Slots of the lease table, used when the file is created */
+    private int fileSlots = 65_536;
+    /** host:port the "gossip" store listens on; loopback unless set, so nothing is exposed by default */
+    private String gossipBind = "127.0.0.1:47600";
+    /** Comma-separated host:port list of the other nodes, for the "gossip" store */
+    private String gossipPeers;
+
+    public Duration getLeaseAsJava() {
+        return Duration.parse(lease);
+    }
+}
@@ -10,8 +10,42 @@ import java.util.ArrayList;
 public class GuardConfig {
     private List<GuardStage> stages = new ArrayList<>();
     private String windowSize = "PT1M";
+    /** Window counter per group: "exact" (default) or "bucketed" */
+    private String windowType = "exact";
+    /** Number of time-wheel buckets used by the "bucketed" window */
+    private int windowBuckets = 60;
+    /** How events are grouped: "message" (default) or "stack" */
+    private String groupStrategy = "message";
+    /** Application frames fingerprinted by the "stack" group strategy */
+    private int groupStackDepth = 5;
+    /** Upper bound of tracked alert groups; further groups share one overflow group */
+    private int maxGroups = 10_000;
+    /** Fold repeats of a sent alert into edits of that message instead of new messages */
+    private boolean repeatEdit = false;
+    /** How long after an alert its repeats are folded into it */
+    private String repeatEditWindow = "PT10M";
+    /** Delay that batches repeats into one editMessageText call */
+    private String repeatEditDebounce = "PT5S";
+    /** How often the digest of suppressed and rate limited alerts is sent, null to disable it */
+    private String digestInterval;
+    /** Groups listed in the digest */
+    private int digestSize = 10;
+    /** Groups counted at once by the digest sketch */
+    private int digestCapacity = 100;
 
     public Duration getWindow() {
         return Duration.parse(windowSize);
     }
+
+    public Duration getRepeatEditWindowAsJava() {
+        return Duration.parse(repeatEditWindow);
+    }
+
+    public Duration getRepeatEditDebounceAsJava() {
+        return Duration.parse(repeatEditDebounce);
+    }
+
+    public Duration getDigestIntervalAsJava() {
+        return digestInterval == null ? null : Duration.parse(digestInterval);
+    }
 }
\ No newline at end of file
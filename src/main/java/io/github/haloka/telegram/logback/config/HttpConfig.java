@@ -8,6 +8,10 @@ public class HttpConfig {
     private String connectTimeout = "PT10S";
     private String readTimeout = "PT10S";
     private boolean followRedirects = true;
+    /** Dispatch with sendAsync from a single thread instead of one blocking call per worker */
+    private boolean async = false;
+    /** Maximum concurrent requests in async mode */
+    private int maxInFlight = 16;
 
     public Duration getConnectTimeoutAsJava() {
         return Duration.parse(connectTimeout);
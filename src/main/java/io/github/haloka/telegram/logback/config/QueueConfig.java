@@ -0,0 +1,20 @@
+package io.github.haloka.telegram.logback.config;
+
+import java.time.Duration;
+import lombok.Data;
+
+@Data
+public class QueueConfig {
+    /** "array" for an ArrayBlockingQueue, "ring" for the lock-free ring buffer */
+    private String type = "array";
+    /** How idle senders wait on the ring buffer: blocking, sleeping or yielding */
+    private String waitStrategy = "blocking";
+    /** What happens to an alert that finds the queue full: dropNewest, dropOldest or block */
+    private String overflowPolicy = "dropNewest";
+    /** Longest a logging thread waits for room with the block policy */
+    private String blockTimeout = "PT0.1S";
+
+    public Duration getBlockTimeoutAsJava() {
+        return Duration.parse(blockTimeout);
+    }
+}
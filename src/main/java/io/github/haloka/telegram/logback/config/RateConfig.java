@@ -8,6 +8,11 @@ public class RateConfig {
     private int maxMessagesPerMinute = 20;
     private String window = "PT1M";
 
+    // Outgoing pacing to Telegram's limits, 0 disables a limit
+    private int chatPerSecond = 1;
+    private int groupPerMinute = 20;
+    private int globalPerSecond = 30;
+
     public Duration getWindowAsJava() {
         return Duration.parse(window);
     }
@@ -0,0 +1,22 @@
+package io.github.haloka.telegram.logback.config;
+
+import java.time.Duration;
+import lombok.Data;
+
+@Data
+public class RetryConfig {
+    /** Total send attempts per message, including the first one; 1 disables retries */
+    private int maxAttempts = 5;
+    private String initialBackoff = "PT1S";
+    private String maxBackoff = "PT1M";
+    /** Upper bound of messages waiting for a retry; further failures are dropped */
+    private int maxPending = 1000;
+
+    public Duration getInitialBackoffAsJava() {
+        return Duration.parse(initialBackoff);
+    }
+
+    public Duration getMaxBackoffAsJava() {
+        return Duration.parse(maxBackoff);
+    }
+}
@@ -0,0 +1,20 @@
+package io.github.haloka.telegram.logback.config;
+
+import java.time.Duration;
+import lombok.Data;
+
+@Data
+public class SpoolConfig {
+    /** Directory for spool segment files; null disables spooling */
+    private String directory;
+    /** Size of one memory-mapped segment file in bytes */
+    private int segmentSize = 1024 * 1024;
+    /** Segments kept on disk; the oldest one is evicted when a new one is needed */
+    private int maxSegments = 16;
+    /** How often spooled alerts are offered back to the send queue */
+    private String replayInterval = "PT5S";
+
+    public Duration getReplayIntervalAsJava() {
+        return Duration.parse(replayInterval);
+    }
+}
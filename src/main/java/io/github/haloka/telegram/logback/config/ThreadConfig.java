@@ -9,6 +9,8 @@ public class ThreadConfig {
     private int maxPoolSize = 2;
     private int queueCapacity = 500;
     private String keepAliveTime = "PT1M";
+    /** One virtual thread per send on JDK 21+, limited by httpMaxInFlight */
+    private boolean virtual = false;
 
     public Duration getKeepAliveTimeAsJava() {
         return Duration.parse(keepAliveTime);
@@ -0,0 +1,132 @@
+package io.github.haloka.telegram.logback;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs inserts, removals and lookups on one {@link ConcurrentLongMap} from many threads while
+ * the table grows through several resizes, mirroring every write in a {@link ConcurrentHashMap}.
+ * Each writer owns its own keys, so its reads must match the oracle exactly; lookups of other
+ * threads' keys may be stale but must never return a value stored under a different key. At the
+ * end size and contents must equal the oracle's.
+ */
+public class ConcurrentLongMapCheck {
+    private static final int THREADS = 8;
+    private static final int KEYS_PER_THREAD = 20_000;
+    private static final int OPS_PER_THREAD = 400_000;
+
+    private static final class Value {
+        private final long key;
+
+        private Value(long key) {
+            this.key = key;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        ConcurrentLongMap<Value> map = new ConcurrentLongMap<>();
+        ConcurrentHashMap<Long, Value> oracle = new ConcurrentHashMap<>();
+        AtomicLong foreignReads = new AtomicLong();
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[THREADS];
+        Throwable[] failures = new Throwable[THREADS];
+        for (int t = 0; t < THREADS; t++) {
+            final int owner = t;
+            threads[t] = new Thread(() -> {
+                try {
+                    start.await();
+                    run(map, oracle, owner, foreignReads);
+                } catch (Throwable e) {
+                    failures[owner] = e;
+                }
+            });
+            threads[t].setDaemon(true);
+            threads[t].start();
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread thread : threads) {
+            // A corrupted table can leave a probe looping forever
+            thread.join(60_000);
+            if (thread.isAlive()) {
+                throw new AssertionError("writer stuck after 60 s");
+            }
+        }
+        long elapsedMs = (System.nanoTime() - begin) / 1_000_000;
+        for (Throwable failure : failures) {
+            if (failure != null) {
+                throw new AssertionError("writer failed", failure);
+            }
+        }
+
+        check("size", map.size(), oracle.size());
+        Map<Long, Value> visited = new HashMap<>();
+        map.forEach((key, value) -> {
+            if (visited.put(key, value) != null) {
+                throw new AssertionError("key visited twice: " + key);
+            }
+        });
+        check("entries visited", visited.size(), oracle.size());
+        oracle.forEach((key, value) -> {
+            if (visited.get(key) != value || map.get(key) != value) {
+                throw new AssertionError("entry differs from the oracle: " + key);
+            }
+        });
+        System.out.printf("OK: %d ops on %d threads, %d entries left, %d foreign reads, in %d ms%n",
+            (long) THREADS * OPS_PER_THREAD, THREADS, oracle.size(), foreignReads.get(), elapsedMs);
+    }
+
+    private static void run(ConcurrentLongMap<Value> map, ConcurrentHashMap<Long, Value> oracle, int owner,
+                            AtomicLong foreignReads) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long reads = 0;
+        for (int i = 0; i < OPS_PER_THREAD; i++) {
+            // Keys spread over the whole long range, so probes cross the table's wrap-around
+            long key = spread(owner * (long) KEYS_PER_THREAD + random.nextInt(KEYS_PER_THREAD));
+            int op = random.nextInt(10);
+            if (op < 5) {
+                Value value = map.computeIfAbsent(key, Value::new);
+                Value expected = oracle.computeIfAbsent(key, ignored -> value);
+                same("computeIfAbsent " + key, value, expected);
+            } else if (op < 8) {
+                Value current = oracle.get(key);
+                boolean removed = map.remove(key, current != null ? current : new Value(key));
+                check("remove " + key, removed ? 1 : 0, current != null ? 1 : 0);
+                if (removed) {
+                    oracle.remove(key);
+                }
+            } else if (op < 9) {
+                same("get " + key, map.get(key), oracle.get(key));
+            } else {
+                long foreign = spread(random.nextLong(THREADS * (long) KEYS_PER_THREAD));
+                Value value = map.get(foreign);
+                if (value != null && value.key != foreign) {
+                    throw new AssertionError("get " + foreign + " returned the value of " + value.key);
+                }
+                reads++;
+            }
+        }
+        foreignReads.addAndGet(reads);
+    }
+
+    private static long spread(long index) {
+        return index * 0x9E3779B97F4A7C15L + 1;
+    }
+
+    private static void same(String name, Value actual, Value expected) {
+        if (actual != expected) {
+            throw new AssertionError(name + ": differs from the oracle");
+        }
+    }
+
+    private static void check(String name, long actual, long expected) {
+        if (actual != expected) {
+            throw new AssertionError(name + ": expected " + expected + " but was " + actual);
+        }
+    }
+}
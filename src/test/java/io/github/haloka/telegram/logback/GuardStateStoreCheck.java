@@ -0,0 +1,92 @@
+package io.github.haloka.telegram.logback;
+
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs two nodes of each shared {@link GuardStateStore} in this process on localhost and checks
+ * that a lease taken by one node holds back the other, that it is released once it expires, that
+ * a long-dead lease does not come back to life, and that gossip from an unlisted address is ignored.
+ */
+public class GuardStateStoreCheck {
+    private static final long LEASE = 60_000;
+    /** Gossip datagram magic, see GossipGuardStateStore */
+    private static final int GOSSIP_MAGIC = 0x54474750;
+
+    public static void main(String[] args) throws Exception {
+        checkSharedFile();
+        checkGossip();
+        System.out.println("OK: file and gossip stores");
+    }
+
+    private static void checkSharedFile() throws Exception {
+        Path dir = Files.createTempDirectory("guard-store-check");
+        Path file = dir.resolve("leases");
+        SharedFileGuardStateStore a = new SharedFileGuardStateStore(file, 1024, LEASE);
+        SharedFileGuardStateStore b = new SharedFileGuardStateStore(file, 1024, LEASE);
+        try {
+            long now = System.currentTimeMillis();
+            check("file: first claim", a.tryAcquire(1, now, LEASE), true);
+            check("file: claim held by the other node", b.tryAcquire(1, now, LEASE), false);
+            check("file: own renewal", a.tryAcquire(1, now + 1000, LEASE), true);
+            check("file: claim after expiry", b.tryAcquire(1, now + 2 * LEASE, LEASE), true);
+            check("file: taken over", a.tryAcquire(1, now + 2 * LEASE, LEASE), false);
+
+            a.tryAcquire(2, now - TimeUnit.DAYS.toMillis(120), LEASE);
+            check("file: lease of a dead process after 120 days", b.tryAcquire(2, now, LEASE), true);
+
+            a.tryAcquire(3, now, LEASE);
+            b.evictExpired(now + 2 * LEASE);
+            check("file: claim after sweep", b.tryAcquire(3, now + 2 * LEASE, LEASE), true);
+        } finally {
+            a.close();
+            b.close();
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(dir);
+        }
+    }
+
+    private static void checkGossip() throws Exception {
+        InetAddress loopback = InetAddress.getLoopbackAddress();
+        InetSocketAddress addressA = new InetSocketAddress(loopback, freePort());
+        InetSocketAddress addressB = new InetSocketAddress(loopback, freePort());
+        GossipGuardStateStore a = new GossipGuardStateStore(addressA, List.of(addressB));
+        GossipGuardStateStore b = new GossipGuardStateStore(addressB, List.of(addressA));
+        try (DatagramChannel stranger = DatagramChannel.open()) {
+            stranger.bind(new InetSocketAddress(loopback, 0));
+            long now = System.currentTimeMillis();
+
+            check("gossip: first claim", a.tryAcquire(1, now, LEASE), true);
+            Thread.sleep(500);
+            check("gossip: claim announced by the peer", b.tryAcquire(1, System.currentTimeMillis(), LEASE), false);
+
+            ByteBuffer forged = ByteBuffer.allocate(32);
+            forged.putInt(GOSSIP_MAGIC).putLong(42).putLong(2).putLong(42).putInt((int) LEASE).flip();
+            stranger.send(forged, addressA);
+            Thread.sleep(500);
+            check("gossip: claim forged by an unlisted sender", a.tryAcquire(2, System.currentTimeMillis(), LEASE), true);
+        } finally {
+            a.close();
+            b.close();
+        }
+    }
+
+    private static int freePort() throws Exception {
+        try (DatagramSocket socket = new DatagramSocket(0, InetAddress.getLoopbackAddress())) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static void check(String name, boolean actual, boolean expected) {
+        if (actual != expected) {
+            throw new AssertionError(name + ": expected " + expected + " but was " + actual);
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package io.github.haloka.telegram.logback;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongConsumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * In-process stand-in for the Bot API {@code sendMessage} and {@code editMessageText} endpoints. Accepts the JSON the
+ * appender produces, injects latency, 429s with {@code retry_after}, 5xx responses and
+ * dropped connections at configurable rates, and records per-chat deliveries.
+ */
+public class MockTelegramServer implements AutoCloseable {
+    private static final Pattern ALERT_ID = Pattern.compile("load-(\\d+)");
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "mock-telegram");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AtomicLong messageIds = new AtomicLong();
+
+    private volatile long latencyMillis = 0;
+    private volatile long latencyJitterMillis = 0;
+    private volatile double tooManyRequestsRate = 0;
+    private volatile int retryAfterSeconds = 1;
+    private volatile double serverErrorRate = 0;
+    private volatile double connectionResetRate = 0;
+    private volatile LongConsumer alertListener = id -> { };
+
+    private final Map<String, LongAdder> deliveredPerChat = new ConcurrentHashMap<>();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder tooManyRequests = new LongAdder();
+    private final LongAdder serverErrors = new LongAdder();
+    private final LongAdder connectionResets = new LongAdder();
+    private final LongAdder edits = new LongAdder();
+
+    public MockTelegramServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /** URL template for the appender's {@code url} setting */
+    public String url() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/bot{0}/sendMessage";
+    }
+
+    public MockTelegramServer latency(long millis, long jitterMillis) {
+        this.latencyMillis = millis;
+        this.latencyJitterMillis = jitterMillis;
+        return this;
+    }
+
+    public MockTelegramServer tooManyRequests(double rate, int retryAfterSeconds) {
+        this.tooManyRequestsRate = rate;
+        this.retryAfterSeconds = retryAfterSeconds;
+        return this;
+    }
+
+    public MockTelegramServer serverErrors(double rate) {
+        this.serverErrorRate = rate;
+        return this;
+    }
+
+    public MockTelegramServer connectionResets(double rate) {
+        this.connectionResetRate = rate;
+        return this;
+    }
+
+    /** Called with every {@code load-<id>} marker found in a delivered message */
+    public MockTelegramServer onAlert(LongConsumer listener) {
+        this.alertListener = listener;
+        return this;
+    }
+
+    public Map<String, LongAdder> getDeliveredPerChat() {
+        return deliveredPerChat;
+    }
+
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    public long getTooManyRequests() {
+        return tooManyRequests.sum();
+    }
+
+    public long getServerErrors() {
+        return serverErrors.sum();
+    }
+
+    public long getEdits() {
+        return edits.sum();
+    }
+
+    public long getConnectionResets() {
+        return connectionResets.sum();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.increment();
+        byte[] body;
+        try (InputStream in = exchange.getRequestBody()) {
+            body = in.readAllBytes();
+        }
+        sleep();
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (random.nextDouble() < connectionResetRate) {
+            connectionResets.increment();
+            exchange.close();
+            return;
+        }
+        if (random.nextDouble() < tooManyRequestsRate) {
+            tooManyRequests.increment();
+            respond(exchange, 429, "{\"ok\":false,\"error_code\":429,"
+                + "\"description\":\"Too Many Requests: retry after " + retryAfterSeconds + "\","
+                + "\"parameters\":{\"retry_after\":" + retryAfterSeconds + "}}");
+            return;
+        }
+        if (random.nextDouble() < serverErrorRate) {
+            serverErrors.increment();
+            respond(exchange, 502, "{\"ok\":false,\"error_code\":502,\"description\":\"Bad Gateway\"}");
+            return;
+        }
+
+        JsonNode payload = objectMapper.readTree(body);
+        String chatId = payload.path("chat_id").asText();
+        if (exchange.getRequestURI().getPath().endsWith("/editMessageText")) {
+            edits.increment();
+            respond(exchange, 200, "{\"ok\":true,\"result\":{\"message_id\":" + payload.path("message_id").asLong()
+                + ",\"chat\":{\"id\":" + chatId + "}}}");
+            return;
+        }
+        deliveredPerChat.computeIfAbsent(chatId, key -> new LongAdder()).increment();
+        Matcher matcher = ALERT_ID.matcher(payload.path("text").asText());
+        while (matcher.find()) {
+            alertListener.accept(Long.parseLong(matcher.group(1)));
+        }
+
+        respond(exchange, 200, "{\"ok\":true,\"result\":{\"message_id\":" + messageIds.incrementAndGet()
+            + ",\"chat\":{\"id\":" + chatId + "}}}");
+    }
+
+    private void sleep() {
+        long delay = latencyMillis
+            + (latencyJitterMillis > 0 ? ThreadLocalRandom.current().nextLong(latencyJitterMillis + 1) : 0);
+        if (delay <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] response = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, response.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(response);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
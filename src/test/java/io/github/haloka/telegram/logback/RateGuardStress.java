@@ -0,0 +1,124 @@
+package io.github.haloka.telegram.logback;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import io.github.haloka.telegram.logback.config.GuardConfig;
+import io.github.haloka.telegram.logback.config.GuardStage;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hammers one {@link RateGuard} from many threads and checks that every group goes through
+ * exactly the same transitions it would see single-threaded: (stage1 - 1) alerts, one
+ * suppression notice, one escalation, and silence afterwards. Also checks that the shared
+ * overflow state ages out, so a storm in it does not suppress groups that overflow much later.
+ */
+public class RateGuardStress {
+    private static final int THREADS = 16;
+    private static final int EVENTS_PER_THREAD = 50_000;
+    private static final int GROUPS = 8;
+
+    public static void main(String[] args) throws Exception {
+        GuardConfig config = new GuardConfig();
+        config.setWindowSize("PT1H");
+        config.getStages().add(stage(5, "PT10M"));
+        config.getStages().add(stage(100, "PT1H"));
+        RateGuard guard = new RateGuard(config, new TimestampFormatter("UTC"), new MessageGroupKeys());
+
+        LoggingEvent[] events = new LoggingEvent[GROUPS];
+        for (int i = 0; i < GROUPS; i++) {
+            events[i] = event("stress group " + i);
+        }
+
+        AtomicInteger alerts = new AtomicInteger();
+        AtomicInteger suppressions = new AtomicInteger();
+        AtomicInteger escalations = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[THREADS];
+        for (int t = 0; t < THREADS; t++) {
+            final int offset = t;
+            threads[t] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                long now = System.currentTimeMillis();
+                for (int i = 0; i < EVENTS_PER_THREAD; i++) {
+                    SendDecision decision = guard.shouldSendAlert(now, events[(i + offset) % GROUPS]);
+                    if (!decision.isShouldSend()) {
+                        continue;
+                    }
+                    if (!decision.isSuppressionNotification()) {
+                        alerts.incrementAndGet();
+                    } else if (decision.getSuppressionMessage().contains("Escalation")) {
+                        escalations.incrementAndGet();
+                    } else {
+                        suppressions.incrementAndGet();
+                    }
+                }
+            });
+            threads[t].start();
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long elapsedMs = (System.nanoTime() - begin) / 1_000_000;
+
+        check("alerts", alerts.get(), GROUPS * 4);
+        check("suppressions", suppressions.get(), GROUPS);
+        check("escalations", escalations.get(), GROUPS);
+        check("groups", guard.getGroupCount(), GROUPS);
+        System.out.printf("OK: %d events on %d threads in %d ms%n", THREADS * EVENTS_PER_THREAD, THREADS, elapsedMs);
+
+        checkOverflowAgesOut();
+        System.out.println("OK: overflow state aged out");
+    }
+
+    private static void checkOverflowAgesOut() {
+        GuardConfig config = new GuardConfig();
+        config.setWindowSize("PT1H");
+        config.getStages().add(stage(5, "PT10M"));
+        config.setMaxGroups(2);
+        RateGuard guard = new RateGuard(config, new TimestampFormatter("UTC"), new MessageGroupKeys());
+        long now = System.currentTimeMillis();
+
+        guard.shouldSendAlert(now, event("old 1"));
+        guard.shouldSendAlert(now, event("old 2"));
+        for (int i = 0; i < 10; i++) {
+            guard.shouldSendAlert(now, event("old overflow " + i));
+        }
+        check("old overflow suppressed", guard.shouldSendAlert(now, event("old overflow")).isShouldSend() ? 1 : 0, 0);
+
+        long later = now + 3 * 3_600_000L;
+        guard.evictIdle(later);
+        guard.shouldSendAlert(later, event("new 1"));
+        guard.shouldSendAlert(later, event("new 2"));
+        SendDecision decision = guard.shouldSendAlert(later, event("new overflow"));
+        check("new overflow sent", decision.isShouldSend() && !decision.isSuppressionNotification() ? 1 : 0, 1);
+    }
+
+    private static LoggingEvent event(String message) {
+        LoggingEvent event = new LoggingEvent();
+        event.setLevel(Level.ERROR);
+        event.setMessage(message);
+        return event;
+    }
+
+    private static GuardStage stage(int count, String duration) {
+        GuardStage stage = new GuardStage();
+        stage.setCount(count);
+        stage.setDuration(duration);
+        stage.setLabel("stage " + count);
+        return stage;
+    }
+
+    private static void check(String name, int actual, int expected) {
+        if (actual != expected) {
+            throw new AssertionError(name + ": expected " + expected + " but was " + actual);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package io.github.haloka.telegram.logback;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.classic.util.LogbackMDCAdapter;
+import ch.qos.logback.core.util.StatusPrinter2;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Drives a {@link TelegramAppender} against {@link MockTelegramServer} and reports end-to-end
+ * alert latency percentiles and drop rates. Every setting is a system property, e.g.
+ * <pre>
+ * java -Dalerts=5000 -Drate=500 -DlatencyMs=80 -Drate429=0.02 -DhttpAsync=true \
+ *      -DbatchMaxMessages=20 ... io.github.haloka.telegram.logback.TelegramLoadTest
+ * </pre>
+ */
+public class TelegramLoadTest {
+
+    public static void main(String[] args) throws Exception {
+        int alerts = Integer.getInteger("alerts", 2000);
+        int rate = Integer.getInteger("rate", 200);
+        int chats = Integer.getInteger("chats", 1);
+        long drainSeconds = Long.getLong("drainSeconds", 30);
+
+        AtomicLongArray loggedAt = new AtomicLongArray(alerts);
+        AtomicLongArray deliveredAt = new AtomicLongArray(alerts);
+        LongAdder delivered = new LongAdder();
+
+        try (MockTelegramServer server = new MockTelegramServer()) {
+            server.latency(Long.getLong("latencyMs", 50), Long.getLong("latencyJitterMs", 20))
+                .tooManyRequests(doubleProperty("rate429", 0), Integer.getInteger("retryAfter", 1))
+                .serverErrors(doubleProperty("rate5xx", 0))
+                .connectionResets(doubleProperty("rateReset", 0))
+                .onAlert(id -> {
+                    if (id < alerts && deliveredAt.compareAndSet((int) id, 0, System.nanoTime())) {
+                        delivered.increment();
+                    }
+                });
+
+            LoggerContext context = new LoggerContext();
+            context.setMDCAdapter(new LogbackMDCAdapter());
+            TelegramAppender[] appenders = new TelegramAppender[chats];
+            for (int c = 0; c < chats; c++) {
+                appenders[c] = createAppender(context, server.url(), String.valueOf(1000 + c));
+            }
+            Logger logger = context.getLogger("load.Test");
+
+            long intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+            long start = System.nanoTime();
+            for (int i = 0; i < alerts; i++) {
+                long due = start + i * intervalNanos;
+                while (System.nanoTime() < due) {
+                    Thread.onSpinWait();
+                }
+                LoggingEvent event = new LoggingEvent(Logger.class.getName(), logger, Level.ERROR,
+                    "Load alert load-" + i, new IllegalStateException("load failure " + i), null);
+                loggedAt.set(i, System.nanoTime());
+                appenders[i % chats].doAppend(event);
+            }
+            long producedNanos = System.nanoTime() - start;
+
+            long drainDeadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(drainSeconds);
+            while (delivered.sum() < alerts && System.nanoTime() < drainDeadline) {
+                Thread.sleep(50);
+            }
+            for (TelegramAppender appender : appenders) {
+                appender.stop();
+            }
+
+            if (Boolean.getBoolean("printStatus")) {
+                new StatusPrinter2().print(context);
+            }
+            report(alerts, producedNanos, loggedAt, deliveredAt, server, appenders);
+        }
+    }
+
+    private static TelegramAppender createAppender(LoggerContext context, String url, String chatId) {
+        TelegramAppender appender = new TelegramAppender();
+        appender.setContext(context);
+        appender.setName("load-" + chatId);
+        appender.setUrl(url);
+        appender.setBotToken("load");
+        appender.setChatId(chatId);
+        appender.setAppName("LoadTest");
+        appender.setRateLimitMaxMessages(Integer.getInteger("rateLimitMaxMessages", Integer.MAX_VALUE));
+        appender.setRateLimitChatPerSecond(Integer.getInteger("rateLimitChatPerSecond", 0));
+        appender.setRateLimitGlobalPerSecond(Integer.getInteger("rateLimitGlobalPerSecond", 0));
+        appender.setThreadCorePoolSize(Integer.getInteger("threadCorePoolSize", 2));
+        appender.setThreadMaxPoolSize(Integer.getInteger("threadCorePoolSize", 2));
+        appender.setThreadQueueCapacity(Integer.getInteger("threadQueueCapacity", 500));
+        appender.setHttpAsync(Boolean.getBoolean("httpAsync"));
+        appender.setThreadVirtual(Boolean.getBoolean("threadVirtual"));
+        appender.setHttpMaxInFlight(Integer.getInteger("httpMaxInFlight", 16));
+        appender.setBatchMaxMessages(Integer.getInteger("batchMaxMessages", 1));
+        appender.setBatchLinger(System.getProperty("batchLinger", "PT0S"));
+        appender.setDeferredFormatting(Boolean.getBoolean("deferredFormatting"));
+        appender.setDrainTimeout(System.getProperty("drainTimeout", "PT5S"));
+        appender.setRepeatEdit(Boolean.getBoolean("repeatEdit"));
+        appender.start();
+        return appender;
+    }
+
+    private static void report(int alerts, long producedNanos, AtomicLongArray loggedAt, AtomicLongArray deliveredAt,
+                               MockTelegramServer server, TelegramAppender[] appenders) {
+        long[] latencies = new long[alerts];
+        int count = 0;
+        for (int i = 0; i < alerts; i++) {
+            if (deliveredAt.get(i) != 0) {
+                latencies[count++] = deliveredAt.get(i) - loggedAt.get(i);
+            }
+        }
+        Arrays.sort(latencies, 0, count);
+
+        System.out.printf("alerts logged:     %d in %d ms%n", alerts, TimeUnit.NANOSECONDS.toMillis(producedNanos));
+        System.out.printf("alerts delivered:  %d (drop rate %.2f%%)%n", count, 100.0 * (alerts - count) / alerts);
+        System.out.printf("requests received: %d (429: %d, 5xx: %d, resets: %d, edits: %d)%n", server.getRequests(),
+            server.getTooManyRequests(), server.getServerErrors(), server.getConnectionResets(), server.getEdits());
+        for (Map.Entry<String, LongAdder> chat : server.getDeliveredPerChat().entrySet()) {
+            System.out.printf("chat %s:         %d messages%n", chat.getKey(), chat.getValue().sum());
+        }
+        long retried = 0;
+        long throttled = 0;
+        long queueFull = 0;
+        double perRequest = 0;
+        long sendP99 = 0;
+        for (TelegramAppender appender : appenders) {
+            TelegramAppenderMetricsMBean metrics = appender.getMetrics();
+            retried += metrics.getRetried();
+            throttled += metrics.getThrottled();
+            queueFull += metrics.getDroppedQueueFull();
+            perRequest += metrics.getAlertsPerRequest() / appenders.length;
+            sendP99 = Math.max(sendP99, metrics.getSendLatencyP99Micros());
+        }
+        System.out.printf("retries:           %d, throttled %d, queue full drops %d, alerts per request %.2f%n",
+            retried, throttled, queueFull, perRequest);
+        System.out.printf("send p99 us:       %d%n", sendP99);
+        if (count > 0) {
+            System.out.printf("latency ms:        p50 %.1f, p90 %.1f, p99 %.1f, max %.1f%n",
+                percentile(latencies, count, 0.50), percentile(latencies, count, 0.90),
+                percentile(latencies, count, 0.99), latencies[count - 1] / 1e6);
+        }
+    }
+
+    private static double percentile(long[] sorted, int count, double percentile) {
+        int index = (int) Math.min(count - 1, Math.ceil(percentile * count) - 1);
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+
+    private static double doubleProperty(String name, double defaultValue) {
+        String value = System.getProperty(name);
+        return value == null ? defaultValue : Double.parseDouble(value);
+    }
+}